@@ -0,0 +1,111 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+/**
+ * Checks that the Barnes-Hut solver with a theta of 0 gives exactly the same
+ * game as the pairwise solver. Two worlds are made from the same seed, one
+ * with each solver, and are played with the same made up key presses:
+ *
+ * java BarnesHutCheck [level] [ticks] [seed]
+ *
+ * After every tick the positions and velocities of every object in the two
+ * worlds are compared bit for bit. The game is chaotic, so any difference,
+ * however small, would grow into a different game. The check exits with
+ * status 1 at the first tick that differs.
+ *
+ * @author Alex Rodrigues
+ */
+public class BarnesHutCheck {
+
+    public static void main(String[] args) {
+        int level = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        Session session = Session.generate(seed, level, ticks);
+        World pairwise = new World(new PairwiseGravity(), level, seed);
+        World barnesHut = new World(new BarnesHutGravity(0), level, seed);
+        for (int t = 0; t < ticks; t++) {
+            pairwise.setKeys(session.getKeys(t));
+            barnesHut.setKeys(session.getKeys(t));
+            pairwise.step();
+            barnesHut.step();
+            String difference = compare(pairwise, barnesHut);
+            if (difference != null) {
+                System.out.println("tick " + t + ": " + difference);
+                System.exit(1);
+            }
+        }
+        System.out.println(ticks + " ticks on level " + level + ", "
+                + pairwise.getJunkCount() + " junk, "
+                + pairwise.planets.size() + " planets: identical");
+        pairwise.close();
+        barnesHut.close();
+    }
+
+    /**
+     * Compares two worlds.
+     *
+     * @return What differs, or null if nothing does.
+     */
+    private static String compare(World a, World b) {
+        if (!same(a.ship.store, a.ship.id, b.ship.store, b.ship.id)) {
+            return "the ship differs";
+        }
+        String difference = compare("planet", a.planets, b.planets);
+        if (difference == null) {
+            difference = compare("junk", a.spaceJunk, b.spaceJunk);
+        }
+        if (difference == null) {
+            difference = compare("bullet", a.bullets, b.bullets);
+        }
+        if (difference == null) {
+            difference = compare("sleeping junk", a.dormancy.getJunk(),
+                    b.dormancy.getJunk());
+        }
+        return difference;
+    }
+
+    private static String compare(String name, EntityStore<?> a,
+            EntityStore<?> b) {
+        if (a.size() != b.size()) {
+            return name + " count " + a.size() + " vs " + b.size();
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (!same(a, i, b, i)) {
+                return name + " " + i + " differs";
+            }
+        }
+        return null;
+    }
+
+    private static boolean same(EntityStore<?> a, int i, EntityStore<?> b,
+            int j) {
+        return same(a.xPosition[i], b.xPosition[j])
+                && same(a.yPosition[i], b.yPosition[j])
+                && same(a.xVelocity[i], b.xVelocity[j])
+                && same(a.yVelocity[i], b.yVelocity[j]);
+    }
+
+    private static boolean same(double a, double b) {
+        return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+    }
+}
@@ -0,0 +1,378 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.util.Arrays;
+
+/**
+ * Applies gravity with the Barnes-Hut approximation. The planets, junk and
+ * bullets are each put into a quadtree, and a group of objects that is far
+ * enough away is treated as a single mass at its center of mass. This brings
+ * the cost down from quadratic to about n log n.
+ *
+ * The opening angle theta controls the accuracy. A node is only treated as a
+ * single mass when its size divided by its distance is less than theta. With
+ * a theta of 0 nothing would be approximated, so the pairs are handed to
+ * PairwiseGravity instead and evaluated in its order, which gives exactly the
+ * same velocities; BarnesHutCheck checks this bit for bit.
+ *
+ * @author Alex Rodrigues
+ */
+public class BarnesHutGravity implements GravitySolver {
+
+    /*
+     * The opening angle.
+     */
+    private double theta;
+    /*
+     * One quadtree for each group of objects, since not every group attracts
+     * every other group.
+     */
+    private final Quadtree planetTree = new Quadtree();
+    private final Quadtree junkTree = new Quadtree();
+    private final Quadtree bulletTree = new Quadtree();
+    /*
+     * The stack of nodes used while walking a tree.
+     */
+    private int[] stack = new int[128];
+    /*
+     * Evaluates every pair when theta is 0.
+     */
+    private final PairwiseGravity exact = new PairwiseGravity();
+
+    public BarnesHutGravity(double theta) {
+        setTheta(theta);
+    }
+
+    /**
+     * Gets the opening angle.
+     *
+     * @return The opening angle.
+     */
+    public double getTheta() {
+        return theta;
+    }
+
+    /**
+     * Sets the opening angle. Smaller values are more accurate and slower.
+     *
+     * @param theta The opening angle, at least 0.
+     */
+    public void setTheta(double theta) {
+        if (theta < 0) {
+            throw new IllegalArgumentException("theta must not be negative");
+        }
+        this.theta = theta;
+    }
+
+    @Override
+    public void apply(Spacecraft ship, EntityStore<Planet> planets,
+            EntityStore<SpaceJunk> junk, EntityStore<Bullet> bullets) {
+        if (theta == 0) {
+            exact.apply(ship, planets, junk, bullets);
+            return;
+        }
+        double g = ship.world.gravitationalConstant();
+        planetTree.build(planets);
+        junkTree.build(junk);
+        bulletTree.build(bullets);
+        EntityStore<?> ss = ship.store;
+        int si = ship.id;
+        double shipX = ss.xPosition[si];
+        double shipY = ss.yPosition[si];
+        double shipMass = ss.mass[si];
+
+        //the positions do not change while gravity is applied, so each
+        //object can have its velocity updated as soon as it is visited
+        for (int i = 0; i < planets.size(); i++) {
+            walk(planetTree, i, planets, i, g);
+            pull(planets, i, shipX, shipY, shipMass, g);
+            walk(junkTree, -1, planets, i, g);
+            walk(bulletTree, -1, planets, i, g);
+        }
+
+        walk(planetTree, -1, ss, si, g);
+        walk(junkTree, -1, ss, si, g);
+
+        for (int i = 0; i < junk.size(); i++) {
+            walk(planetTree, -1, junk, i, g);
+            pull(junk, i, shipX, shipY, shipMass, g);
+            walk(bulletTree, -1, junk, i, g);
+        }
+
+        for (int i = 0; i < bullets.size(); i++) {
+            walk(planetTree, -1, bullets, i, g);
+            walk(junkTree, -1, bullets, i, g);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Applies the attraction of every object in a tree to the target.
+     *
+     * @param tree The tree of attracting objects.
+     * @param self The index of the target in the tree, or -1 if it is not in
+     * the tree.
+     * @param target The store of the object being attracted.
+     * @param t The id of the object being attracted.
+     * @param g The gravitational constant.
+     */
+    private void walk(Quadtree tree, int self, EntityStore<?> target, int t,
+            double g) {
+        if (tree.nodeCount == 0) {
+            return;
+        }
+        double tx = target.xPosition[t];
+        double ty = target.yPosition[t];
+        double theta2 = theta * theta;
+        int sp = 0;
+        stack[sp++] = 0;
+        while (sp > 0) {
+            int n = stack[--sp];
+            if (tree.child[n] < 0) {
+                for (int b = tree.head[n]; b >= 0; b = tree.next[b]) {
+                    if (b != self) {
+                        pull(target, t, tree.bx[b], tree.by[b], tree.bm[b], g);
+                    }
+                }
+                continue;
+            }
+            double x = tree.comX[n] - tx;
+            double y = tree.comY[n] - ty;
+            double size = 2 * tree.half[n];
+            if (size * size < theta2 * (x * x + y * y)
+                    && !tree.contains(n, tx, ty)) {
+                pull(target, t, tree.comX[n], tree.comY[n], tree.mass[n], g);
+            } else {
+                if (sp + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                int c = tree.child[n];
+                for (int k = 0; k < 4; k++) {
+                    if (tree.mass[c + k] > 0) {
+                        stack[sp++] = c + k;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Pulls the target towards a mass. This is one half of
+     * GameObject.applyGravitationalAttraction and uses the same arithmetic.
+     *
+     * @param target The store of the object being attracted.
+     * @param t The id of the object being attracted.
+     * @param sx The x position of the attracting mass.
+     * @param sy The y position of the attracting mass.
+     * @param sm The attracting mass.
+     * @param g The gravitational constant.
+     */
+    private static void pull(EntityStore<?> target, int t, double sx,
+            double sy, double sm, double g) {
+        double x = sx - target.xPosition[t];
+        double y = sy - target.yPosition[t];
+        double r = Math.sqrt(x * x + y * y);
+
+        if (r > 100) {
+            double mass = target.mass[t];
+            r = Math.max(r, 2500);
+            double gForce = g * ((sm * mass) / (1 + r));
+            x /= r;
+            y /= r;
+            target.xVelocity[t] += x * gForce / mass * target.gInfluence[t];
+            target.yVelocity[t] += y * gForce / mass * target.gInfluence[t];
+        }
+    }
+
+    /**
+     * A quadtree over the positions of a group of objects. The nodes and
+     * bodies are stored in arrays that are reused from tick to tick.
+     */
+    private static final class Quadtree {
+
+        /*
+         * Leaves this deep are never split, so objects at the same position
+         * just share a leaf.
+         */
+        private static final int MAX_DEPTH = 24;
+        /*
+         * The bodies, and the next body in the same leaf.
+         */
+        double[] bx = new double[64];
+        double[] by = new double[64];
+        double[] bm = new double[64];
+        int[] next = new int[64];
+        int bodyCount;
+        /*
+         * The nodes. A leaf has no children and a list of bodies, an internal
+         * node has its four children stored next to each other.
+         */
+        int[] child = new int[256];
+        int[] head = new int[256];
+        double[] centerX = new double[256];
+        double[] centerY = new double[256];
+        double[] half = new double[256];
+        double[] mass = new double[256];
+        double[] comX = new double[256];
+        double[] comY = new double[256];
+        int nodeCount;
+
+        /**
+         * Rebuilds the tree from a list of objects.
+         */
+        void build(EntityStore<?> list) {
+            nodeCount = 0;
+            bodyCount = list.size();
+            if (bodyCount > bx.length) {
+                int n = Math.max(bodyCount, bx.length * 2);
+                bx = new double[n];
+                by = new double[n];
+                bm = new double[n];
+                next = new int[n];
+            }
+            if (bodyCount == 0) {
+                return;
+            }
+
+            double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+            double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+            for (int i = 0; i < bodyCount; i++) {
+                bx[i] = list.xPosition[i];
+                by[i] = list.yPosition[i];
+                bm[i] = list.mass[i];
+                minX = Math.min(minX, bx[i]);
+                minY = Math.min(minY, by[i]);
+                maxX = Math.max(maxX, bx[i]);
+                maxY = Math.max(maxY, by[i]);
+            }
+
+            newNode((minX + maxX) / 2, (minY + maxY) / 2,
+                    Math.max(maxX - minX, maxY - minY) / 2 + 1);
+            for (int i = 0; i < bodyCount; i++) {
+                insert(i);
+            }
+            summarize();
+        }
+
+        /**
+         * Return true iff the point is inside the node.
+         */
+        boolean contains(int n, double x, double y) {
+            return Math.abs(x - centerX[n]) <= half[n]
+                    && Math.abs(y - centerY[n]) <= half[n];
+        }
+
+        private void insert(int b) {
+            int n = 0;
+            int depth = 0;
+            while (true) {
+                if (child[n] >= 0) {
+                    n = child[n] + quadrant(n, bx[b], by[b]);
+                    depth++;
+                } else if (head[n] < 0 || depth >= MAX_DEPTH) {
+                    next[b] = head[n];
+                    head[n] = b;
+                    return;
+                } else {
+                    split(n);
+                }
+            }
+        }
+
+        /**
+         * Splits a leaf into four children and moves its bodies into them.
+         */
+        private void split(int n) {
+            double h = half[n] / 2;
+            int c = newNode(centerX[n] - h, centerY[n] - h, h);
+            newNode(centerX[n] + h, centerY[n] - h, h);
+            newNode(centerX[n] - h, centerY[n] + h, h);
+            newNode(centerX[n] + h, centerY[n] + h, h);
+            child[n] = c;
+
+            int b = head[n];
+            head[n] = -1;
+            while (b >= 0) {
+                int following = next[b];
+                int k = c + quadrant(n, bx[b], by[b]);
+                next[b] = head[k];
+                head[k] = b;
+                b = following;
+            }
+        }
+
+        private int quadrant(int n, double x, double y) {
+            return (x < centerX[n] ? 0 : 1) + (y < centerY[n] ? 0 : 2);
+        }
+
+        private int newNode(double x, double y, double h) {
+            if (nodeCount == child.length) {
+                int n = nodeCount * 2;
+                child = Arrays.copyOf(child, n);
+                head = Arrays.copyOf(head, n);
+                centerX = Arrays.copyOf(centerX, n);
+                centerY = Arrays.copyOf(centerY, n);
+                half = Arrays.copyOf(half, n);
+                mass = Arrays.copyOf(mass, n);
+                comX = Arrays.copyOf(comX, n);
+                comY = Arrays.copyOf(comY, n);
+            }
+            int n = nodeCount++;
+            child[n] = -1;
+            head[n] = -1;
+            centerX[n] = x;
+            centerY[n] = y;
+            half[n] = h;
+            return n;
+        }
+
+        /**
+         * Computes the mass and center of mass of every node. Children are
+         * always created after their parent so a backwards pass sees every
+         * child before its parent.
+         */
+        private void summarize() {
+            for (int n = nodeCount - 1; n >= 0; n--) {
+                double m = 0, mx = 0, my = 0;
+                if (child[n] < 0) {
+                    for (int b = head[n]; b >= 0; b = next[b]) {
+                        m += bm[b];
+                        mx += bm[b] * bx[b];
+                        my += bm[b] * by[b];
+                    }
+                } else {
+                    for (int k = child[n]; k < child[n] + 4; k++) {
+                        m += mass[k];
+                        mx += mass[k] * comX[k];
+                        my += mass[k] * comY[k];
+                    }
+                }
+                mass[n] = m;
+                comX[n] = m > 0 ? mx / m : centerX[n];
+                comY[n] = m > 0 ? my / m : centerY[n];
+            }
+        }
+    }
+}
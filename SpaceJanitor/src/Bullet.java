@@ -31,21 +31,59 @@ public class Bullet extends GameObject {
     //the amount of time the bullet will remain active when a collision
     //has not occured.
     int bulletTimeSpan = 250;
+    /**
+     * How fast the ship fires bullets, on top of its own velocity.
+     */
+    static final double SPEED = 20;
+    /*
+     * Where the bullet was at the start of the tick, and how far it moved
+     * during the tick. The move is kept as it was before the bullet was
+     * wrapped around the edge of the world, so on the tick it wraps the
+     * line it moved along still runs up to and over the edge it crossed.
+     */
+    private double previousX, previousY, moveX, moveY;
 
-    public Bullet(double startX, double startY, double a, double initXSpeed, 
-            double initYSpeed) {
-
+    public Bullet(World world, double startX, double startY, double a,
+            double initXSpeed, double initYSpeed) {
+        super(world);
         createShape();
-        this.mass = 10000;
-        this.gInfluence = 20 * Math.min(0.2 * Game.level, 1);
-        xPosition = startX;
-        yPosition = startY;
-        angle = a;
-        speedFactor = 20;
+        init(startX, startY, a, initXSpeed, initYSpeed);
+    }
+
+    /**
+     * Gets a bullet from the pool of the world, or creates one if the pool
+     * is empty.
+     *
+     * @param world The world the bullet is fired in.
+     * @return The bullet.
+     */
+    public static Bullet create(World world, double startX, double startY,
+            double a, double initXSpeed, double initYSpeed) {
+        Bullet b = world.bulletPool.obtain();
+        if (b == null) {
+            return new Bullet(world, startX, startY, a, initXSpeed, initYSpeed);
+        }
+        b.recycle();
+        b.init(startX, startY, a, initXSpeed, initYSpeed);
+        return b;
+    }
+
+    private void init(double startX, double startY, double a, double initXSpeed,
+            double initYSpeed) {
+        setMass(10000);
+        setGInfluence(20 * Math.min(0.2 * world.level, 1));
+        setPosition(startX, startY);
+        setAngle(a);
+        speedFactor = SPEED;
         this.minimapSize = 1;
-        xVelocity = Math.cos(angle) * speedFactor + initXSpeed;
-        yVelocity = Math.sin(angle) * speedFactor + initYSpeed;
+        setVelocity(Math.cos(a) * speedFactor + initXSpeed,
+                Math.sin(a) * speedFactor + initYSpeed);
 
+        previousX = startX;
+        previousY = startY;
+        moveX = 0;
+        moveY = 0;
+        updateDrawShape();
         this.setActive();
     }
 
@@ -57,10 +95,92 @@ public class Bullet extends GameObject {
         shape.addPoint(0, 0);
         shape.addPoint(0, 0);
 
-        drawShape = Game.copyPolygon(shape);
+        drawShape = GameObject.copyPolygon(shape);
+    }
+
+    /**
+     * Moves the bullet, keeping where it started from and how far it went.
+     */
+    @Override
+    public void update() {
+        EntityStore<?> s = store;
+        previousX = s.xPosition[id];
+        previousY = s.yPosition[id];
+        moveX = s.xVelocity[id] + s.prefXdir[id] * s.prefSpeed[id];
+        moveY = s.yVelocity[id] + s.prefYdir[id] * s.prefSpeed[id];
+        super.update();
+    }
+
+    /**
+     * Sets where the bullet was at the start of the tick, as if it had moved
+     * from there to where it is now.
+     *
+     * @param x The x position.
+     * @param y The y position.
+     */
+    void setPreviousPosition(double x, double y) {
+        previousX = x;
+        previousY = y;
+        moveX = getXPosition() - x;
+        moveY = getYPosition() - y;
+    }
+
+    /**
+     * Sets the draw shape to the line the bullet moved along during the
+     * tick, from where it was at the start of the tick. The collision tests
+     * treat the line like any other shape, so a fast bullet can not pass
+     * through something between two ticks. The line only depends on the
+     * positions kept by update, so this can be called any number of times.
+     */
+    @Override
+    void updateDrawShape() {
+        int x0 = (int) Math.round(previousX);
+        int y0 = (int) Math.round(previousY);
+        int x1 = (int) Math.round(previousX + moveX);
+        int y1 = (int) Math.round(previousY + moveY);
+        drawShape.xpoints[0] = x0;
+        drawShape.ypoints[0] = y0;
+        drawShape.xpoints[1] = x0;
+        drawShape.ypoints[1] = y0;
+        drawShape.xpoints[2] = x1;
+        drawShape.ypoints[2] = y1;
+        drawShape.xpoints[3] = x1;
+        drawShape.ypoints[3] = y1;
+        drawShape.invalidate();
+    }
+
+    /**
+     * Gets the middle of the line the bullet moved along this tick.
+     *
+     * @return The x position of the middle.
+     */
+    @Override
+    public double getBoundsX() {
+        return previousX + moveX / 2;
+    }
+
+    /**
+     * Gets the middle of the line the bullet moved along this tick.
+     *
+     * @return The y position of the middle.
+     */
+    @Override
+    public double getBoundsY() {
+        return previousY + moveY / 2;
+    }
+
+    /**
+     * Gets a radius around the middle of the line the bullet moved along
+     * this tick that holds the whole line.
+     *
+     * @return The bounding radius of the bullet.
+     */
+    @Override
+    public double getBoundingRadius() {
+        return Math.hypot(moveX, moveY) / 2 + 2;
     }
 
     public boolean remove() {
-        return this.counter >= bulletTimeSpan || !this.isActive();
+        return store.counter[id] >= bulletTimeSpan || !this.isActive();
     }
 }
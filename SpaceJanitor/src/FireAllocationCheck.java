@@ -0,0 +1,110 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Checks that steady fire allocates nothing once the pools are warm. The ship
+ * fires at a piece of junk that can not be destroyed, so every few ticks a
+ * bullet is fired, hits, throws out debris and goes back to the pool, and the
+ * world is stepped as usual around it:
+ *
+ * java FireAllocationCheck [ticks] [gravity]
+ *
+ * After a warm-up the bytes the ticks allocate on the calling thread are
+ * measured. The check exits with status 1 if they allocate anything, if no
+ * bullet hit, or if the JVM can not measure allocation. The parallel gravity
+ * solver fails it, since ForkJoinPool.invoke allocates a few bytes a call.
+ *
+ * @author Alex Rodrigues
+ */
+public class FireAllocationCheck {
+
+    /*
+     * The ticks played before measuring, so the pools, the lists and the
+     * JIT have settled.
+     */
+    private static final int WARMUP_TICKS = 20000;
+    /*
+     * How far in front of the ship the target is.
+     */
+    private static final double RANGE = 400;
+
+    public static void main(String[] args) {
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        String gravity = args.length > 1 ? args[1] : null;
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            System.out.println("this JVM can not measure allocation");
+            System.exit(1);
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long thread = Thread.currentThread().getId();
+
+        //only the ship and the target, which nothing pulls on or moves
+        World world = new World(World.createGravitySolver(gravity), 2, 1);
+        world.spaceJunk.clear();
+        world.planets.clear();
+        Spacecraft ship = world.ship;
+        ship.setGInfluence(0);
+        SpaceJunk target = new SpaceJunk(world, ship.getXPosition()
+                + RANGE * Math.cos(ship.getAngle()), ship.getYPosition()
+                + RANGE * Math.sin(ship.getAngle()), 1);
+        target.setVelocity(0, 0);
+        target.setPreferredVelocity(0, 0, 0);
+        target.setRotationStep(0);
+        target.setGInfluence(0);
+        target.setHp(1e12);
+        world.spaceJunk.add(target);
+        world.spaceKey = true;
+
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            world.step();
+        }
+        double hp = target.getHp();
+        long shots = world.bulletPool.getHits() + world.bulletPool.getMisses();
+        long start = threads.getThreadAllocatedBytes(thread);
+        //the cost of asking, which is subtracted from the result
+        long overhead = threads.getThreadAllocatedBytes(thread) - start;
+        start = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < ticks; i++) {
+            world.step();
+        }
+        long bytes = threads.getThreadAllocatedBytes(thread) - start - overhead;
+        long hits = (long) (hp - target.getHp());
+        shots = world.bulletPool.getHits() + world.bulletPool.getMisses() - shots;
+        world.close();
+
+        System.out.println(ticks + " ticks, " + shots + " shots, " + hits
+                + " hits, " + Math.max(0, bytes) + " bytes allocated");
+        System.out.println("bullet pool: " + world.bulletPool);
+        if (!target.isActive() || hits == 0) {
+            System.out.println("the bullets did not hit the target");
+            System.exit(1);
+        }
+        if (bytes > 0) {
+            System.out.println("steady fire should allocate nothing");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.util.Locale;
+
+/**
+ * Keeps the time between the last few frames, so the frame rate and how
+ * evenly frames are paced can be shown on the screen and compared between
+ * the ways of drawing the game.
+ *
+ * @author Alex Rodrigues
+ */
+public class FrameTimer {
+
+    /*
+     * The number of frames the statistics are taken over.
+     */
+    private static final int FRAMES = 120;
+    /*
+     * The times between frames in nanoseconds, oldest overwritten first.
+     */
+    private final long[] times = new long[FRAMES];
+    private int count, next;
+    private long last;
+    private long frames;
+
+    /**
+     * Marks the end of a frame.
+     */
+    public void frame() {
+        long now = System.nanoTime();
+        if (last != 0) {
+            times[next] = now - last;
+            next = (next + 1) % FRAMES;
+            count = Math.min(count + 1, FRAMES);
+        }
+        last = now;
+        frames++;
+    }
+
+    /**
+     * Gets the number of frames marked.
+     *
+     * @return The number of frames.
+     */
+    public long getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * Return the mean time between the last frames in milliseconds.
+     */
+    public double getAverageMillis() {
+        if (count == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += times[i];
+        }
+        return sum / 1e6 / count;
+    }
+
+    /**
+     * Return the longest time between the last frames in milliseconds.
+     */
+    public double getMaxMillis() {
+        long max = 0;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, times[i]);
+        }
+        return max / 1e6;
+    }
+
+    /**
+     * Return the number of frames per second over the last frames.
+     */
+    public double getFramesPerSecond() {
+        double average = getAverageMillis();
+        return average == 0 ? 0 : 1000 / average;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%.1f fps, %.2f ms avg, %.2f ms max",
+                getFramesPerSecond(), getAverageMillis(), getMaxMillis());
+    }
+}
@@ -21,45 +21,34 @@
  */
 
 import java.awt.*;
-import java.util.ArrayList;
 /**
- * An object in the game.
+ * An object in the game. The physical state of the object (its position,
+ * velocity, preferred direction and speed, facing angle, rotation step, mass,
+ * gravitational influence, hp and whether it is active), its tick counter
+ * and its random numbers are kept in the EntityStore the object lives in,
+ * under the objects id.
  * @author Alex Rodrigues
  */
 public class GameObject {
 
-    //The position of the object in the world.
-    double xPosition;
-    double yPosition;
-    
-    //The velocity of the object.
-    double xVelocity;
-    double yVelocity;
-    
-    //These define a constant bias in the game objects velocity.
-    double prefXdir, prefYdir, prefSpeed;
-    
-    //The facing angle of the object.
-    double angle;
+    //The world the object is in.
+    final World world;
+
+    //The store that holds the state of this object, and the index of the
+    //object in it.
+    EntityStore<?> store;
+    int id;
     
-    //The shape of the object represented as a polygon.
+    //The shape of the object represented as a polygon, and the shape moved
+    //to where the object is. The draw shape is made the first time it is
+    //needed.
     Polygon shape, drawShape;
     
-    //The rate at which the object rotates.
-    double rotationStep;
-    
     //This determines how fast an object accelerates or moves forward.
     double speedFactor;
     
-    //True iff the object is active/alive.
-    private boolean active;
-    
-    int counter;
     Color color = Color.GREEN;
     
-    //The number of times an object can be hit and remain active.
-    double hp = 1;
-    
     //If this is true the rendered polygon for this object will be filled.
     //Otherwise the poylgon will be drawn as a wireframe.
     boolean fillShape = false;
@@ -68,7 +57,40 @@ public class GameObject {
     //on the minimap.
     public int minimapSize = 4;
     
-    double mass, gInfluence = 1;
+    //The radius of a circle around the objects position that encloses its
+    //draw shape at any rotation. A negative value means not yet computed.
+    private double boundingRadius = -1;
+    
+    //Bookkeeping for the render snapshots, see SnapshotBuffer.
+    long renderTick;
+    int renderSlot;
+
+    //Bookkeeping for MultiRateGravity: the pull of the far away objects per
+    //tick, the refresh it was summed at, and the last tick the object was in
+    //the world.
+    double farPullX, farPullY;
+    int farPullRefresh, gravityTick;
+
+    //The shape rotated about the objects position to transformAngle, and the
+    //rounded position drawShape was last moved to. The vertices are only
+    //rebuilt when the angle or the position changes.
+    private int[] rotatedX, rotatedY;
+    private double transformAngle;
+    private int transformX, transformY;
+    //The draw shape the transform was built for, or null if it must be
+    //rebuilt.
+    private Polygon transformShape;
+
+    //The same for paint, which runs on the render thread at interpolated
+    //positions and angles, so it can not share the one above.
+    private int[] paintRotatedX, paintRotatedY, paintX, paintY;
+    private double paintAngle;
+
+    public GameObject(World world) {
+        this.world = world;
+        EntityStore.attach(this);
+        world.random.split(store.randomSeed, store.randomGamma, id);
+    }
     
     /**
      * Paint the game object to the world.
@@ -77,52 +99,96 @@ public class GameObject {
      */
     public void paint(Graphics g, int xOffset, int yOffset) {
 
-        if (!this.active) {
+        if (!this.isActive()) {
             return;
         }
-        int x, y;
-        Polygon translatedDrawShape = Game.copyPolygon(drawShape);
-        for (int i = 0; i < shape.npoints; i++) {
-            x = (int) Math.round(shape.xpoints[i] * Math.cos(angle) 
-                    - shape.ypoints[i] * Math.sin(angle));
-            y = (int) Math.round(shape.xpoints[i] * Math.sin(angle) 
-                    + shape.ypoints[i] * Math.cos(angle));
-            translatedDrawShape.xpoints[i] = x;
-            translatedDrawShape.ypoints[i] = y;
+        paint(g, getXPosition(), getYPosition(), getAngle(), xOffset, yOffset);
+    }
+
+    /**
+     * Paint the game object to the world at the given position and angle
+     * rather than its current ones. This only reads the shape and color of
+     * the object, which never change, and its own paint transform, which
+     * only the render thread uses, so it is safe to call while another
+     * thread updates the object.
+     *
+     * @param g The graphics for the world.
+     * @param xPosition The x position to draw the object at.
+     * @param yPosition The y position to draw the object at.
+     * @param angle The angle to draw the object at.
+     */
+    public void paint(Graphics g, double xPosition, double yPosition,
+            double angle, int xOffset, int yOffset) {
+        int n = shape.npoints;
+        if (paintX == null || paintX.length < n) {
+            paintRotatedX = new int[n];
+            paintRotatedY = new int[n];
+            paintX = new int[n];
+            paintY = new int[n];
+            rotateShape(angle, paintRotatedX, paintRotatedY);
+            paintAngle = angle;
+        } else if (angle != paintAngle) {
+            rotateShape(angle, paintRotatedX, paintRotatedY);
+            paintAngle = angle;
         }
 
-        translatedDrawShape.invalidate();
-        translatedDrawShape.translate((int) Math.round(xPosition - xOffset), (int) Math.round(yPosition - yOffset));
+        int dx = (int) Math.round(xPosition - xOffset);
+        int dy = (int) Math.round(yPosition - yOffset);
+        for (int i = 0; i < n; i++) {
+            paintX[i] = paintRotatedX[i] + dx;
+            paintY[i] = paintRotatedY[i] + dy;
+        }
 
         g.setColor(color);
         if (fillShape) {
-            g.fillPolygon(translatedDrawShape);
+            g.fillPolygon(paintX, paintY, n);
         } else {
-            g.drawPolygon(translatedDrawShape);
+            g.drawPolygon(paintX, paintY, n);
         }
     }
 
+    /**
+     * Brings an object that was removed from its list back to the state of a
+     * newly created one, so it can be reused. Only the shape is kept.
+     */
+    void recycle() {
+        EntityStore.attach(this);
+        world.random.split(store.randomSeed, store.randomGamma, id);
+        renderTick = 0;
+        farPullRefresh = 0;
+        gravityTick = 0;
+        if (drawShape != null) {
+            System.arraycopy(shape.xpoints, 0, drawShape.xpoints, 0, shape.npoints);
+            System.arraycopy(shape.ypoints, 0, drawShape.ypoints, 0, shape.npoints);
+            drawShape.invalidate();
+        }
+        transformShape = null;
+    }
+
     /**
      * Return true iff the game object is still active.
      *
      * @return
      */
     public boolean isActive() {
-        return this.active;
+        //an object that was removed from its list is dead
+        return store != null && store.active[id];
     }
 
     /**
      * Sets the game object as active.
      */
     public void setActive() {
-        this.active = true;
+        store.active[id] = true;
     }
 
     /**
      * Kills the game object by setting it to inactive.
      */
     public void kill() {
-        this.active = false;
+        if (store != null) {
+            store.active[id] = false;
+        }
     }
 
     /**
@@ -130,22 +196,22 @@ public class GameObject {
      *
      * @param debris The list of explosions in the world.
      */
-    public void hit(ArrayList<Debris> debris) {
+    public void hit(DebrisParticles debris) {
         hit(debris, false);
     }
 
     /**
      * Hit the game object.
      *
-     * @param debris The list of debris in the world.
+     * @param debris The debris in the world.
      * @param createDebris True if the hit causes an explosion of debris.
      */
-    public void hit(ArrayList<Debris> debris, boolean createDebris) {
-        if (active) {
-            hp--;
-            if (hp <= 0) {
-                active = false;
-                counter = 0;
+    public void hit(DebrisParticles debris, boolean createDebris) {
+        if (isActive()) {
+            store.hp[id]--;
+            if (store.hp[id] <= 0) {
+                kill();
+                store.counter[id] = 0;
             }
         }
         if (createDebris) {
@@ -156,45 +222,45 @@ public class GameObject {
      * Create an explosion of debris around the game object.
      */
 
-    public void explode(ArrayList<Debris> debris) {
-        double rnd = Math.random() * 12 + 5;
+    public void explode(DebrisParticles debris) {
+        double rnd = nextRandom() * 12 + 5;
         for (int k = 0; k < rnd; k++) {
-            debris.add(new Debris(this.xPosition, this.yPosition));
+            debris.emit(getXPosition(), getYPosition());
         }
     }
 
     /**
-     * Return true iff both game objects are colliding.
+     * Gets a random double from 0 up to but not including 1 from the random
+     * numbers of this object.
+     *
+     * @return The number.
+     */
+    double nextRandom() {
+        return RandomSource.nextDouble(store.randomSeed, store.randomGamma, id);
+    }
+
+    /**
+     * Return true iff both game objects are colliding. Objects whose bounding
+     * circles are apart are rejected straight away, the rest are tested with
+     * the separating axis test on their draw shapes.
      *
      * @param object2 The other game object.
      * @return A boolean that is true iff the game objects are colliding.
      */
     public boolean isColliding(GameObject object2) {
 
-        if (!this.active || !object2.isActive()) {
+        if (!this.isActive() || !object2.isActive()) {
             return false;
         }
 
-        int x, y;
-        for (int i = 0; i < object2.drawShape.npoints; i++) {
-            x = object2.drawShape.xpoints[i];
-            y = object2.drawShape.ypoints[i];
-
-            if (this.drawShape.contains(x, y)) {
-                return true;
-            }
-        }
-
-        for (int i = 0; i < this.drawShape.npoints; i++) {
-            x = this.drawShape.xpoints[i];
-            y = this.drawShape.ypoints[i];
-
-            if (object2.drawShape.contains(x, y)) {
-                return true;
-            }
+        double x = object2.getBoundsX() - getBoundsX();
+        double y = object2.getBoundsY() - getBoundsY();
+        double r = getBoundingRadius() + object2.getBoundingRadius();
+        if (x * x + y * y > r * r) {
+            return false;
         }
 
-        return false;
+        return Narrowphase.polygonsOverlap(drawShape, object2.drawShape);
     }
     
     /**
@@ -203,58 +269,132 @@ public class GameObject {
      * @param obj The other object.
      */
     public void applyGravitationalAttraction(GameObject obj){
-        
-        Pair center1 = obj.getCenter();
-        Pair center2 = this.getCenter();
-        double x = (double)center1.getFirst() - (double)center2.getFirst();
-        double y = (double)center1.getSecond() - (double)center2.getSecond();
-        double gConstant = 0.0000000028 * Math.min(0.2 * Game.level, 1);
+
+        EntityStore<?> s1 = this.store, s2 = obj.store;
+        int i1 = this.id, i2 = obj.id;
+        double x = s2.xPosition[i2] - s1.xPosition[i1];
+        double y = s2.yPosition[i2] - s1.yPosition[i1];
+        double gConstant = world.gravitationalConstant();
         double r = Math.sqrt(x*x + y*y);
         
         if (r > 100){
             r = Math.max(r, 2500);
-            double gForce = gConstant * ((obj.mass * this.mass)/(1 + r ));  
+            double gForce = gConstant * ((s2.mass[i2] * s1.mass[i1])/(1 + r ));  
             x/= r;
             y/= r;
-            this.xVelocity += x * gForce/this.mass * this.gInfluence;
-            this.yVelocity += y * gForce/this.mass * this.gInfluence;
-            obj.xVelocity -= x * gForce/obj.mass * obj.gInfluence;
-            obj.yVelocity -= y * gForce/obj.mass * obj.gInfluence;
+            s1.xVelocity[i1] += x * gForce/s1.mass[i1] * s1.gInfluence[i1];
+            s1.yVelocity[i1] += y * gForce/s1.mass[i1] * s1.gInfluence[i1];
+            s2.xVelocity[i2] -= x * gForce/s2.mass[i2] * s2.gInfluence[i2];
+            s2.yVelocity[i2] -= y * gForce/s2.mass[i2] * s2.gInfluence[i2];
         }
     }
     
     /**
-     * Gets the best known center point for this game object.
-     * @return The center point of the game object.
+     * Gets the center of the circle getBoundingRadius is the radius of,
+     * which is the position of the object unless it says otherwise.
+     *
+     * @return The x position of the center.
+     */
+    public double getBoundsX() {
+        return getXPosition();
+    }
+
+    /**
+     * Gets the center of the circle getBoundingRadius is the radius of.
+     *
+     * @return The y position of the center.
      */
-    public Pair getCenter(){
-        return new Pair(this.xPosition, this.yPosition);
+    public double getBoundsY() {
+        return getYPosition();
+    }
+
+    /**
+     * Gets the radius of a circle centered on the objects position that
+     * contains its draw shape at any rotation. The store keeps a copy of it
+     * for the collision tests, see World.checkCollisions.
+     *
+     * @return The bounding radius of the object.
+     */
+    public double getBoundingRadius() {
+        if (boundingRadius < 0) {
+            double r = 0;
+            if (shape != null) {
+                for (int i = 0; i < shape.npoints; i++) {
+                    double x = shape.xpoints[i];
+                    double y = shape.ypoints[i];
+                    r = Math.max(r, Math.sqrt(x * x + y * y));
+                }
+            }
+            //the draw shape is rounded to whole pixels twice, once when
+            //rotating and once when translating, so allow some slack
+            boundingRadius = r + 2;
+        }
+        return boundingRadius;
     }
 
     /**
      * Update the position of the game object.
      */
     public void update() {
-        
-        
-        counter++;
-
-        xPosition += xVelocity + prefXdir * prefSpeed ;
-        yPosition += yVelocity + prefYdir * prefSpeed;
+        EntityStore<?> s = store;
+        s.counter[id]++;
+        s.xPosition[id] += s.xVelocity[id] + s.prefXdir[id] * s.prefSpeed[id];
+        s.yPosition[id] += s.yVelocity[id] + s.prefYdir[id] * s.prefSpeed[id];
 
         checkBounds();
+        updateDrawShape();
+    }
 
-        int x, y;
+    /**
+     * Rotates and translates the shape of the object into its draw shape. The
+     * rotation is only redone when the angle has changed, and the draw shape
+     * is left alone when neither the angle nor the rounded position have.
+     */
+    void updateDrawShape() {
+        double angle = getAngle();
+        int x = (int) Math.round(getXPosition());
+        int y = (int) Math.round(getYPosition());
+        int n = shape.npoints;
 
-        for (int i = 0; i < shape.npoints; i++) {
-            x = (int) Math.round(shape.xpoints[i] * Math.cos(angle) - shape.ypoints[i] * Math.sin(angle));
-            y = (int) Math.round(shape.xpoints[i] * Math.sin(angle) + shape.ypoints[i] * Math.cos(angle));
-            drawShape.xpoints[i] = x;
-            drawShape.ypoints[i] = y;
+        if (drawShape == null) {
+            drawShape = copyPolygon(shape);
+        }
+        if (transformShape != drawShape || angle != transformAngle) {
+            if (rotatedX == null || rotatedX.length < n) {
+                rotatedX = new int[n];
+                rotatedY = new int[n];
+            }
+            rotateShape(angle, rotatedX, rotatedY);
+            transformShape = drawShape;
+            transformAngle = angle;
+        } else if (x == transformX && y == transformY) {
+            return;
         }
 
+        for (int i = 0; i < n; i++) {
+            drawShape.xpoints[i] = rotatedX[i] + x;
+            drawShape.ypoints[i] = rotatedY[i] + y;
+        }
         drawShape.invalidate();
-        drawShape.translate((int) Math.round(xPosition), (int) Math.round(yPosition));
+        transformX = x;
+        transformY = y;
+    }
+
+    /**
+     * Rotates the shape of the object about its position, rounding to whole
+     * pixels.
+     *
+     * @param angle The angle to rotate to.
+     * @param xs The rotated x coordinates.
+     * @param ys The rotated y coordinates.
+     */
+    private void rotateShape(double angle, int[] xs, int[] ys) {
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        for (int i = 0; i < shape.npoints; i++) {
+            xs[i] = (int) Math.round(shape.xpoints[i] * cos - shape.ypoints[i] * sin);
+            ys[i] = (int) Math.round(shape.xpoints[i] * sin + shape.ypoints[i] * cos);
+        }
     }
 
     /**
@@ -268,20 +408,177 @@ public class GameObject {
      * Checks if the game object has crossed any boundary points.
      */
     public void checkBounds() {
-        if (xPosition > Game.SPACE_WIDTH) {
-            xPosition = 0;
+        wrap(store.xPosition, store.yPosition, id, world.spaceWidth,
+                world.spaceHeight);
+    }
+
+    /**
+     * Wraps a position that has crossed a boundary point to the other side of
+     * the world.
+     *
+     * @param xPosition The x positions.
+     * @param yPosition The y positions.
+     * @param i The index of the position to wrap.
+     * @param width The total width of space.
+     * @param height The total height of space.
+     */
+    static void wrap(double[] xPosition, double[] yPosition, int i,
+            int width, int height) {
+        if (xPosition[i] > width) {
+            xPosition[i] = 0;
         }
 
-        if (xPosition < 0) {
-            xPosition = Game.SPACE_WIDTH;
+        if (xPosition[i] < 0) {
+            xPosition[i] = width;
         }
 
-        if (yPosition > Game.SPACE_HEIGHT) {
-            yPosition = 0;
+        if (yPosition[i] > height) {
+            yPosition[i] = 0;
         }
 
-        if (yPosition < 0) {
-            yPosition = Game.SPACE_HEIGHT;
+        if (yPosition[i] < 0) {
+            yPosition[i] = height;
+        }
+    }
+
+    /**
+     * Return a copy of the polygon.
+     *
+     * @param polygon The polygon to be copied.
+     * @return A copy of the polygon.
+     */
+    public static Polygon copyPolygon(Polygon polygon) {
+        Polygon copy = new Polygon();
+
+        for (int i = 0; i < polygon.npoints; i++) {
+            copy.addPoint(polygon.xpoints[i], polygon.ypoints[i]);
         }
+        return copy;
+    }
+
+    /*
+     * Accessors for the state kept in the store.
+     */
+
+    public double getXPosition() {
+        return store.xPosition[id];
+    }
+
+    public void setXPosition(double x) {
+        store.xPosition[id] = x;
+    }
+
+    public double getYPosition() {
+        return store.yPosition[id];
+    }
+
+    public void setYPosition(double y) {
+        store.yPosition[id] = y;
+    }
+
+    /**
+     * Moves the object to a position.
+     *
+     * @param x The x position.
+     * @param y The y position.
+     */
+    public void setPosition(double x, double y) {
+        store.xPosition[id] = x;
+        store.yPosition[id] = y;
+    }
+
+    public double getXVelocity() {
+        return store.xVelocity[id];
+    }
+
+    public double getYVelocity() {
+        return store.yVelocity[id];
+    }
+
+    /**
+     * Sets the velocity of the object.
+     *
+     * @param x The x velocity.
+     * @param y The y velocity.
+     */
+    public void setVelocity(double x, double y) {
+        store.xVelocity[id] = x;
+        store.yVelocity[id] = y;
+    }
+
+    /**
+     * Adds to the velocity of the object.
+     *
+     * @param x The change in x velocity.
+     * @param y The change in y velocity.
+     */
+    public void addVelocity(double x, double y) {
+        store.xVelocity[id] += x;
+        store.yVelocity[id] += y;
+    }
+
+    /**
+     * Sets the constant bias in the velocity of the object.
+     *
+     * @param xDir The x component of the direction.
+     * @param yDir The y component of the direction.
+     * @param speed The speed.
+     */
+    public void setPreferredVelocity(double xDir, double yDir, double speed) {
+        store.prefXdir[id] = xDir;
+        store.prefYdir[id] = yDir;
+        store.prefSpeed[id] = speed;
+    }
+
+    public double getPrefXdir() {
+        return store.prefXdir[id];
+    }
+
+    public double getPrefYdir() {
+        return store.prefYdir[id];
+    }
+
+    public double getPrefSpeed() {
+        return store.prefSpeed[id];
+    }
+
+    public double getAngle() {
+        return store.angle[id];
+    }
+
+    public void setAngle(double angle) {
+        store.angle[id] = angle;
+    }
+
+    public double getRotationStep() {
+        return store.rotationStep[id];
+    }
+
+    public void setRotationStep(double rotationStep) {
+        store.rotationStep[id] = rotationStep;
+    }
+
+    public double getMass() {
+        return store.mass[id];
+    }
+
+    public void setMass(double mass) {
+        store.mass[id] = mass;
+    }
+
+    public double getGInfluence() {
+        return store.gInfluence[id];
+    }
+
+    public void setGInfluence(double gInfluence) {
+        store.gInfluence[id] = gInfluence;
+    }
+
+    public double getHp() {
+        return store.hp[id];
+    }
+
+    public void setHp(double hp) {
+        store.hp[id] = hp;
     }
 }
@@ -0,0 +1,425 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Times the gravity solvers on a generated level and reports how far each one
+ * is from the exact pairwise result. The particle mesh solver wraps forces
+ * around the edges of the world, so the error against an exact pairwise sum
+ * that also wraps is reported too; the difference between the two columns is
+ * the part of the error that comes from the wrapping rather than the grid.
+ * No window is needed, so it can be run from the command line:
+ *
+ * java GravityBenchmark [level] [iterations]
+ *
+ * The multi-rate solvers are compared with the pairwise result over a run of
+ * ticks instead, since they only evaluate every pair on some ticks, and the
+ * share of the pair evaluations they skipped is reported.
+ *
+ * The bytes each solver allocates per tick on the calling thread are reported
+ * too, where the JVM can measure them. The pairwise solver goes through
+ * GameObject.applyGravitationalAttraction, which must not allocate, so the
+ * benchmark exits with status 1 if it does.
+ *
+ * @author Alex Rodrigues
+ */
+public class GravityBenchmark {
+
+    /*
+     * The number of bullets in flight, about what sustained fire produces.
+     */
+    private static final int BULLET_COUNT = 50;
+    /*
+     * The number of ticks the multi-rate solvers are compared over.
+     */
+    private static final int MULTI_RATE_TICKS = 100;
+    private final World world;
+    private final Spacecraft ship;
+    private final EntityStore<Planet> planets;
+    private final EntityStore<SpaceJunk> junk;
+    private final EntityStore<Bullet> bullets;
+    /*
+     * Every object, and the velocities they started with.
+     */
+    private final List<GameObject> all = new ArrayList<>();
+    private final double[] startVelocities;
+
+    /**
+     * Generates the objects for a level by loading it into a world, which is
+     * never stepped, and adds some bullets.
+     *
+     * @param level The level, 2 or more.
+     */
+    public GravityBenchmark(int level) {
+        world = new World(new PairwiseGravity(), level);
+        ship = world.ship;
+        planets = world.planets;
+        junk = world.spaceJunk;
+        bullets = world.bullets;
+        for (int i = 0; i < BULLET_COUNT; i++) {
+            double a = world.random.nextDouble() * 2 * Math.PI;
+            Bullet b = new Bullet(world, ship.getXPosition(), ship.getYPosition(), a, 0, 0);
+            b.setPosition(b.getXPosition() + Math.cos(a) * 20 * i,
+                    b.getYPosition() + Math.sin(a) * 20 * i);
+            bullets.add(b);
+        }
+        all.add(ship);
+        all.addAll(planets);
+        all.addAll(junk);
+        all.addAll(bullets);
+        startVelocities = saveVelocities();
+    }
+
+    /**
+     * Runs the solver once from the starting velocities.
+     *
+     * @param solver The solver.
+     * @return The change in velocity of every object, x then y.
+     */
+    public double[] run(GravitySolver solver) {
+        restoreVelocities(startVelocities);
+        solver.apply(ship, planets, junk, bullets);
+        double[] v = saveVelocities();
+        for (int i = 0; i < v.length; i++) {
+            v[i] -= startVelocities[i];
+        }
+        return v;
+    }
+
+    /**
+     * Times the solver.
+     *
+     * @param solver The solver.
+     * @param iterations The number of timed runs.
+     * @return The average time of a run in milliseconds.
+     */
+    public double time(GravitySolver solver, int iterations) {
+        //let the JIT compile the solver first
+        for (int i = 0; i < Math.max(3, iterations / 2); i++) {
+            run(solver);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            run(solver);
+        }
+        return (System.nanoTime() - start) / 1e6 / iterations;
+    }
+
+    /**
+     * Runs a solver that keeps state from tick to tick, like
+     * MultiRateGravity, for a number of ticks and compares every tick with
+     * the exact pairwise result. Between ticks every object moves on by its
+     * starting and preferred velocities, the same for both solvers, so the
+     * difference is only the error of the solver. The objects are put back
+     * where they started afterwards.
+     *
+     * @param solver The solver.
+     * @param ticks The number of ticks.
+     * @return The average time of a tick in milliseconds, the mean and the
+     * worst rms error of a tick, and the worst p99 error of a tick.
+     */
+    public double[] runTicks(GravitySolver solver, int ticks) {
+        double[] start = savePositions();
+        GravitySolver pairwise = new PairwiseGravity();
+        double nanos = 0, sumError = 0, maxError = 0, maxP99 = 0;
+        for (int t = 0; t < ticks; t++) {
+            double[] reference = run(pairwise);
+            restoreVelocities(startVelocities);
+            long before = System.nanoTime();
+            solver.apply(ship, planets, junk, bullets);
+            nanos += System.nanoTime() - before;
+            double[] result = saveVelocities();
+            for (int i = 0; i < result.length; i++) {
+                result[i] -= startVelocities[i];
+            }
+            double error = rmsError(result, reference);
+            sumError += error;
+            maxError = Math.max(maxError, error);
+            maxP99 = Math.max(maxP99, percentileError(result, reference));
+            restoreVelocities(startVelocities);
+            for (int i = 0; i < all.size(); i++) {
+                GameObject obj = all.get(i);
+                EntityStore<?> s = obj.store;
+                int id = obj.id;
+                s.xPosition[id] += s.xVelocity[id] + s.prefXdir[id] * s.prefSpeed[id];
+                s.yPosition[id] += s.yVelocity[id] + s.prefYdir[id] * s.prefSpeed[id];
+                obj.checkBounds();
+            }
+        }
+        pairwise.close();
+        restorePositions(start);
+        return new double[]{nanos / 1e6 / ticks, sumError / ticks, maxError, maxP99};
+    }
+
+    /**
+     * Measures how much the solver allocates.
+     *
+     * @param solver The solver.
+     * @param iterations The number of runs to average over.
+     * @return The average bytes allocated by the calling thread per run, or
+     * -1 if the JVM can not measure it.
+     */
+    public long allocations(GravitySolver solver, int iterations) {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long thread = Thread.currentThread().getId();
+        //the first runs may allocate caches that later runs reuse
+        solver.apply(ship, planets, junk, bullets);
+        solver.apply(ship, planets, junk, bullets);
+        restoreVelocities(startVelocities);
+        long start = threads.getThreadAllocatedBytes(thread);
+        //the cost of asking, which is subtracted from the result
+        long overhead = threads.getThreadAllocatedBytes(thread) - start;
+        start = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < iterations; i++) {
+            solver.apply(ship, planets, junk, bullets);
+        }
+        long bytes = threads.getThreadAllocatedBytes(thread) - start - overhead;
+        restoreVelocities(startVelocities);
+        return Math.max(0, bytes) / iterations;
+    }
+
+    /**
+     * Gets the number of objects in the benchmark.
+     *
+     * @return The number of objects.
+     */
+    public int getObjectCount() {
+        return all.size();
+    }
+
+    /**
+     * Return the root mean square error of a result relative to a reference,
+     * normalised by the root mean square of the reference.
+     */
+    static double rmsError(double[] result, double[] reference) {
+        double error = 0, norm = 0;
+        for (int i = 0; i < result.length; i++) {
+            double d = result[i] - reference[i];
+            error += d * d;
+            norm += reference[i] * reference[i];
+        }
+        return norm == 0 ? 0 : Math.sqrt(error / norm);
+    }
+
+    /**
+     * Return the 99th percentile of the per object error relative to the
+     * size of the reference change in velocity.
+     */
+    static double percentileError(double[] result, double[] reference) {
+        int n = result.length / 2;
+        double[] errors = new double[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            double rx = reference[2 * i], ry = reference[2 * i + 1];
+            double m = Math.sqrt(rx * rx + ry * ry);
+            if (m > 0) {
+                double dx = result[2 * i] - rx, dy = result[2 * i + 1] - ry;
+                errors[count++] = Math.sqrt(dx * dx + dy * dy) / m;
+            }
+        }
+        if (count == 0) {
+            return 0;
+        }
+        Arrays.sort(errors, 0, count);
+        return errors[Math.min(count - 1, (int) (count * 0.99))];
+    }
+
+    private double[] saveVelocities() {
+        double[] v = new double[all.size() * 2];
+        for (int i = 0; i < all.size(); i++) {
+            v[2 * i] = all.get(i).getXVelocity();
+            v[2 * i + 1] = all.get(i).getYVelocity();
+        }
+        return v;
+    }
+
+    private void restoreVelocities(double[] v) {
+        for (int i = 0; i < all.size(); i++) {
+            all.get(i).setVelocity(v[2 * i], v[2 * i + 1]);
+        }
+    }
+
+    private double[] savePositions() {
+        double[] p = new double[all.size() * 2];
+        for (int i = 0; i < all.size(); i++) {
+            p[2 * i] = all.get(i).getXPosition();
+            p[2 * i + 1] = all.get(i).getYPosition();
+        }
+        return p;
+    }
+
+    private void restorePositions(double[] p) {
+        for (int i = 0; i < all.size(); i++) {
+            all.get(i).setPosition(p[2 * i], p[2 * i + 1]);
+        }
+    }
+
+    public static void main(String[] args) {
+        int level = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        GravityBenchmark benchmark = new GravityBenchmark(level);
+
+        String[] names = {"pairwise", "barnes-hut 0.0", "barnes-hut 0.5",
+            "barnes-hut 1.0", "mesh 64", "mesh 128", "mesh 256",
+            "parallel 1", "parallel", "flat"};
+        GravitySolver[] solvers = {new PairwiseGravity(),
+            new BarnesHutGravity(0), new BarnesHutGravity(0.5),
+            new BarnesHutGravity(1), new ParticleMeshGravity(64),
+            new ParticleMeshGravity(128), new ParticleMeshGravity(256),
+            new ParallelGravity(1), new ParallelGravity(),
+            new FlatArrayGravity()};
+        GravitySolver wrappedSolver = new WrappedPairwiseGravity();
+
+        System.out.printf(Locale.ROOT, "level %d, world %d x %d, %d objects%n",
+                level, benchmark.world.getSpaceWidth(),
+                benchmark.world.getSpaceHeight(),
+                benchmark.getObjectCount());
+        System.out.printf(Locale.ROOT, "%-16s %10s %12s %12s %12s %12s%n",
+                "solver", "ms/tick", "rms error", "p99 error", "rms wrapped",
+                "bytes/tick");
+        double[] reference = benchmark.run(solvers[0]);
+        double[] wrapped = benchmark.run(wrappedSolver);
+        wrappedSolver.close();
+        long pairwiseBytes = 0;
+        for (int i = 0; i < solvers.length; i++) {
+            double ms = benchmark.time(solvers[i], iterations);
+            double[] result = benchmark.run(solvers[i]);
+            long bytes = benchmark.allocations(solvers[i], iterations);
+            if (i == 0) {
+                pairwiseBytes = bytes;
+            }
+            System.out.printf(Locale.ROOT, "%-16s %10.3f %12.3e %12.3e %12.3e %12d%n",
+                    names[i], ms, rmsError(result, reference),
+                    percentileError(result, reference),
+                    rmsError(result, wrapped), bytes);
+            solvers[i].close();
+        }
+
+        //the multi-rate solvers are only exact on their first tick, so they
+        //are compared with the pairwise result over a run of ticks
+        System.out.printf(Locale.ROOT, "%n%-16s %10s %12s %12s %12s %12s %12s%n",
+                "solver", "ms/tick", "mean rms", "worst rms", "worst p99",
+                "pairs/tick", "skipped");
+        String[] multiNames = {"multi-rate 0.02", "multi-rate 0.05",
+            "multi-rate 0.1", "multi-rate k=4", "multi-rate k=16"};
+        MultiRateGravity[] multiSolvers = {
+            new MultiRateGravity(MultiRateGravity.NEAR_RADIUS, 0.02),
+            new MultiRateGravity(MultiRateGravity.NEAR_RADIUS, 0.05),
+            new MultiRateGravity(MultiRateGravity.NEAR_RADIUS, 0.1),
+            new MultiRateGravity(MultiRateGravity.NEAR_RADIUS, 4),
+            new MultiRateGravity(MultiRateGravity.NEAR_RADIUS, 16)};
+        //let the JIT compile the solver first, on one whose counters are
+        //thrown away
+        MultiRateGravity warmup = new MultiRateGravity(MultiRateGravity.NEAR_RADIUS, 4);
+        benchmark.runTicks(warmup, MULTI_RATE_TICKS / 4);
+        warmup.close();
+        for (int i = 0; i < multiSolvers.length; i++) {
+            MultiRateGravity solver = multiSolvers[i];
+            double[] r = benchmark.runTicks(solver, MULTI_RATE_TICKS);
+            long evaluated = solver.getEvaluatedPairs();
+            long skipped = solver.getSkippedPairs();
+            System.out.printf(Locale.ROOT, "%-16s %10.3f %12.3e %12.3e %12.3e %12d %11.1f%%%n",
+                    multiNames[i], r[0], r[1], r[2], r[3],
+                    evaluated / MULTI_RATE_TICKS,
+                    100.0 * skipped / (evaluated + skipped));
+            solver.close();
+        }
+        benchmark.close();
+        if (pairwiseBytes > 0) {
+            System.out.println("pairwise gravity allocated " + pairwiseBytes
+                    + " bytes per tick, it should allocate nothing");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Closes the world the objects were generated in.
+     */
+    public void close() {
+        world.close();
+    }
+
+    /**
+     * The exact pairwise sum, but measuring the distance between objects the
+     * shortest way around the world. This is what the particle mesh solver
+     * approximates.
+     */
+    static class WrappedPairwiseGravity implements GravitySolver {
+
+        @Override
+        public void apply(Spacecraft ship, EntityStore<Planet> planets,
+                EntityStore<SpaceJunk> junk, EntityStore<Bullet> bullets) {
+            for (int i = 0; i < planets.size(); i++) {
+                for (int j = i + 1; j < planets.size(); j++) {
+                    attract(planets.get(i), planets.get(j));
+                }
+                attract(planets.get(i), ship);
+                for (int a = 0; a < junk.size(); a++) {
+                    attract(planets.get(i), junk.get(a));
+                }
+                for (int b = 0; b < bullets.size(); b++) {
+                    attract(planets.get(i), bullets.get(b));
+                }
+            }
+            for (int a = 0; a < junk.size(); a++) {
+                attract(ship, junk.get(a));
+                for (int b = 0; b < bullets.size(); b++) {
+                    attract(junk.get(a), bullets.get(b));
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private static void attract(GameObject obj1, GameObject obj2) {
+            double x = obj2.getXPosition() - obj1.getXPosition();
+            double y = obj2.getYPosition() - obj1.getYPosition();
+            int width = obj1.world.spaceWidth, height = obj1.world.spaceHeight;
+            x -= width * Math.rint(x / width);
+            y -= height * Math.rint(y / height);
+            double r = Math.sqrt(x * x + y * y);
+            if (r > 100) {
+                r = Math.max(r, 2500);
+                double gForce = obj1.world.gravitationalConstant()
+                        * ((obj1.getMass() * obj2.getMass()) / (1 + r));
+                x /= r;
+                y /= r;
+                double s1 = gForce / obj1.getMass() * obj1.getGInfluence();
+                double s2 = gForce / obj2.getMass() * obj2.getGInfluence();
+                obj1.addVelocity(x * s1, y * s1);
+                obj2.addVelocity(-x * s2, -y * s2);
+            }
+        }
+    }
+}
@@ -21,51 +21,31 @@
  */
 
 /**
- * Utility class that emulates a tuple.
+ * Applies gravitational attraction between the objects in the world. The
+ * implementations all use the force law from
+ * GameObject.applyGravitationalAttraction and the same set of interacting
+ * pairs: planets attract everything, the ship and the junk attract each other,
+ * and the junk and the bullets attract each other.
+ *
+ * @author Alex Rodrigues
  */
-public class Pair <T1, T2>
-{
-   private final T1 first;
-   private final T2 second;
-   private transient final int hash;
-
-   public Pair( T1 f, T2 s )
-   {
-    this.first = f;
-    this.second = s;
-    hash = (first == null? 0 : first.hashCode() * 31)
-          +(second == null? 0 : second.hashCode());
-   }
-
-   public T1 getFirst()
-   {
-    return first;
-   }
-   public T2 getSecond()
-   {
-    return second;
-   }
-
-   @Override
-   public int hashCode()
-   {
-    return hash;
-   }
+public interface GravitySolver {
 
-   @Override
-   public boolean equals( Object otherObj )
-   {
-    if ( this == otherObj )
-    {
-      return true;
-    }
-    if ( otherObj == null || !(getClass().isInstance( otherObj )) )
-    {
-      return false;
-    }
-    Pair<T1, T2> otherPair = getClass().cast( otherObj );
-    return (first == null? otherPair.first == null : first.equals( otherPair.first ))
-     && (second == null? otherPair.second == null : second.equals( otherPair.second ));
-   }
+    /**
+     * Apply one tick of gravitational attraction to the velocities of the
+     * objects in the world.
+     *
+     * @param ship The players ship.
+     * @param planets The list of planets.
+     * @param junk The list of space junk.
+     * @param bullets The list of bullets.
+     */
+    void apply(Spacecraft ship, EntityStore<Planet> planets,
+            EntityStore<SpaceJunk> junk, EntityStore<Bullet> bullets);
 
+    /**
+     * Releases whatever the solver holds outside of the heap, such as worker
+     * threads. The solver must not be used after this.
+     */
+    void close();
 }
@@ -0,0 +1,75 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.util.Locale;
+
+/**
+ * Steps a world as fast as it can without drawing anything and reports how
+ * many ticks per second it managed. No window is needed, so it can be run on
+ * a server or in CI:
+ *
+ * java HeadlessRunner [ticks] [gravity] [wakeRadius]
+ *
+ * The gravity solver is named the same way as the "gravity" applet parameter.
+ * The wake radius is how far from the ship junk is woken up, "Infinity" to
+ * keep all of it awake.
+ * The ship holds down thrust, turn and fire the whole time so the bullets,
+ * debris and junk splits are exercised too.
+ *
+ * @author Alex Rodrigues
+ */
+public class HeadlessRunner {
+
+    public static void main(String[] args) {
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        String gravity = args.length > 1 ? args[1] : null;
+        World world = new World(World.createGravitySolver(gravity));
+        if (args.length > 2) {
+            world.setWakeRadius(Double.parseDouble(args[2]));
+        }
+        world.upKey = true;
+        world.leftKey = true;
+        world.spaceKey = true;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ticks; i++) {
+            world.step();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        world.close();
+
+        System.out.printf(Locale.ROOT, "%d ticks in %.3f s, %.1f ticks/s%n",
+                ticks, seconds, ticks / seconds);
+        System.out.printf(Locale.ROOT, "level %d, %d junk, %d planets, "
+                + "%d bullets, %d debris%n", world.getLevel(),
+                world.getJunkCount(), world.planets.size(),
+                world.bullets.size(), world.debris.size());
+        System.out.println("junk asleep: " + world.dormancy.size());
+        if (world.getGravity() instanceof MultiRateGravity) {
+            MultiRateGravity g = (MultiRateGravity) world.getGravity();
+            System.out.println("gravity pairs: " + g.getEvaluatedPairs()
+                    + " evaluated, " + g.getSkippedPairs() + " skipped");
+        }
+        System.out.println("bullet pool: " + world.bulletPool);
+        System.out.println("debris evicted: " + world.debris.getEvictedCount());
+    }
+}
@@ -0,0 +1,347 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Times the hot paths of a tick (the physics phases, the polygon updates, the
+ * collision tests and the drawing) on worlds of different levels and sizes,
+ * and writes the results as CSV so runs from different releases can be
+ * compared. The drawing is done into an image, so no window is needed:
+ *
+ * java HotPathBenchmark [-levels 2,5,10] [-junk 500,2000] [-warmup 5]
+ * [-iterations 10] [-time ms] [-benchmarks name,...] [-seed seed]
+ * [-out file.csv]
+ *
+ * Without -junk each level keeps the amount of junk the game gives it. Every
+ * iteration runs on a fresh world made from the seed, 1 by default, and
+ * played for a few ticks with the ship thrusting and firing, so there are
+ * bullets and debris too. The warm-up iterations find how many calls fit in
+ * the time, and every timed iteration makes that many calls, so each one
+ * times the same work even though some benchmarks move the world on. The
+ * CSV has the mean, standard deviation and minimum time of one call over
+ * the iterations.
+ *
+ * @author Alex Rodrigues
+ */
+public class HotPathBenchmark {
+
+    /**
+     * The benchmarks, named after the code they time.
+     */
+    public static final String[] BENCHMARKS = {"World.applyGravity",
+        "World.checkCollisions", "World.updateLists", "GameObject.update",
+        "GameObject.isColliding", "Planet.isColliding",
+        "SnapshotBuffer.publish", "Renderer.drawBackgroundStars",
+        "Renderer.paintLists", "Renderer.drawMinimap", "Minimap.rebuild"};
+    /**
+     * The column names of the CSV.
+     */
+    public static final String CSV_HEADER = "benchmark,level,junk,planets,"
+            + "bullets,debris,iterations,calls,mean_us,stdev_us,min_us";
+    /*
+     * The number of ticks played before timing.
+     */
+    private static final int SETUP_TICKS = 50;
+    /*
+     * Written with the results of the benchmarks so the JIT can not throw
+     * away the work.
+     */
+    static volatile long sink;
+    private final int level, junk;
+    private final long seed;
+    private World world;
+    private SnapshotBuffer snapshots;
+    private RenderSnapshot snapshot;
+    private final Renderer renderer = new Renderer();
+    private final BufferedImage image = new BufferedImage(
+            Renderer.RESOLUTION_WIDTH, Renderer.RESOLUTION_HEIGHT,
+            BufferedImage.TYPE_INT_RGB);
+    private final Graphics2D graphics = image.createGraphics();
+
+    /**
+     * Creates the world for a benchmark and plays it for a few ticks.
+     *
+     * @param level The level.
+     * @param junk The amount of junk, or a negative number to keep the
+     * amount the level comes with.
+     * @param seed The seed of the world.
+     */
+    public HotPathBenchmark(int level, int junk, long seed) {
+        this.level = level;
+        this.junk = junk;
+        this.seed = seed;
+        reset();
+    }
+
+    /**
+     * Makes the world again from the seed and plays it for a few ticks, so
+     * the benchmark starts from the same state every time.
+     */
+    private void reset() {
+        if (world != null) {
+            //let the old world go before the new one is made, so a large
+            //world fits in the heap once and not twice
+            world.close();
+            world = null;
+            snapshots = null;
+            snapshot = null;
+        }
+        world = new World(new BarnesHutGravity(World.BARNES_HUT_THETA), level, seed);
+        while (junk >= 0 && world.spaceJunk.size() < junk) {
+            world.spaceJunk.add(new SpaceJunk(world));
+        }
+        while (junk >= 0 && world.spaceJunk.size() > junk) {
+            world.spaceJunk.remove(world.spaceJunk.size() - 1);
+        }
+        world.upKey = true;
+        world.spaceKey = true;
+        for (int i = 0; i < SETUP_TICKS; i++) {
+            world.step();
+        }
+        world.upKey = false;
+        world.spaceKey = false;
+        snapshots = new SnapshotBuffer();
+        snapshots.publish(world);
+        snapshot = snapshots.acquire();
+        //positions the camera
+        renderer.render(graphics, snapshot, 1);
+    }
+
+    /**
+     * Calls the code a benchmark times once.
+     *
+     * @param benchmark The name of the benchmark.
+     * @return Something computed from the result, for the sink.
+     */
+    long invoke(String benchmark) {
+        EntityStore<SpaceJunk> junk = world.spaceJunk;
+        EntityStore<Planet> planets = world.planets;
+        long result = 0;
+        switch (benchmark) {
+            case "World.applyGravity":
+                world.applyGravity();
+                break;
+            case "World.checkCollisions":
+                world.checkCollisions();
+                break;
+            case "World.updateLists":
+                world.updateLists();
+                break;
+            case "GameObject.update":
+                for (int i = 0; i < junk.size(); i++) {
+                    junk.get(i).update();
+                }
+                break;
+            case "GameObject.isColliding":
+                //each piece of junk against the next one in the list
+                for (int i = 1; i < junk.size(); i++) {
+                    if (junk.get(i).isColliding(junk.get(i - 1))) {
+                        result++;
+                    }
+                }
+                break;
+            case "Planet.isColliding":
+                //each piece of junk against one of the planets
+                for (int i = 0; i < junk.size() && planets.size() > 0; i++) {
+                    if (planets.get(i % planets.size()).isColliding(junk.get(i))) {
+                        result++;
+                    }
+                }
+                break;
+            case "SnapshotBuffer.publish":
+                snapshots.publish(world);
+                snapshot = snapshots.acquire();
+                break;
+            case "Renderer.drawBackgroundStars":
+                renderer.drawBackgroundStars(graphics);
+                break;
+            case "Renderer.paintLists":
+                renderer.paintLists(graphics, snapshot, 0.5);
+                break;
+            case "Renderer.drawMinimap":
+                renderer.drawMinimap(graphics, snapshot);
+                break;
+            case "Minimap.rebuild":
+                renderer.minimap.rebuild(snapshot);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown benchmark: " + benchmark);
+        }
+        return result + world.debris.size();
+    }
+
+    /**
+     * Times a benchmark.
+     *
+     * @param benchmark The name of the benchmark.
+     * @param warmup The number of untimed iterations.
+     * @param iterations The number of timed iterations.
+     * @param nanos The length of each iteration in nanoseconds.
+     * @return A line of CSV.
+     */
+    public String measure(String benchmark, int warmup, int iterations,
+            long nanos) {
+        long calls = 0;
+        for (int i = 0; i < Math.max(1, warmup); i++) {
+            reset();
+            calls = iterate(benchmark, nanos);
+        }
+        reset();
+        String sizes = String.format(Locale.ROOT, "%d,%d,%d,%d",
+                world.spaceJunk.size(), world.planets.size(),
+                world.bullets.size(), world.debris.size());
+        double[] times = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            if (i > 0) {
+                reset();
+            }
+            long start = System.nanoTime();
+            repeat(benchmark, calls);
+            times[i] = (System.nanoTime() - start) / 1e3 / calls;
+        }
+        double mean = 0;
+        for (double t : times) {
+            mean += t;
+        }
+        mean /= iterations;
+        double variance = 0;
+        for (double t : times) {
+            variance += (t - mean) * (t - mean);
+        }
+        double stdev = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0;
+        Arrays.sort(times);
+        return String.format(Locale.ROOT, "%s,%d,%s,%d,%d,%.3f,%.3f,%.3f",
+                benchmark, world.getLevel(), sizes, iterations,
+                calls * iterations, mean, stdev, times[0]);
+    }
+
+    /**
+     * Closes the world.
+     */
+    public void close() {
+        world.close();
+    }
+
+    /**
+     * Calls the benchmark a given number of times.
+     */
+    private void repeat(String benchmark, long calls) {
+        long result = 0;
+        for (long i = 0; i < calls; i++) {
+            result += invoke(benchmark);
+        }
+        sink = result;
+    }
+
+    /**
+     * Calls the benchmark over and over for about the given time.
+     *
+     * @return The number of calls.
+     */
+    private long iterate(String benchmark, long nanos) {
+        long end = System.nanoTime() + nanos;
+        long calls = 0;
+        long result = 0;
+        do {
+            result += invoke(benchmark);
+            calls++;
+        } while (System.nanoTime() < end);
+        sink = result;
+        return calls;
+    }
+
+    private static int[] parseInts(String list) {
+        String[] parts = list.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+
+    public static void main(String[] args) throws FileNotFoundException {
+        int[] levels = {2, 5, 10};
+        int[] junk = {-1};
+        int warmup = 5;
+        int iterations = 10;
+        long nanos = 200000000L;
+        String[] benchmarks = BENCHMARKS;
+        long seed = 1;
+        PrintStream out = System.out;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "-levels":
+                    levels = parseInts(args[i + 1]);
+                    break;
+                case "-junk":
+                    junk = parseInts(args[i + 1]);
+                    break;
+                case "-warmup":
+                    warmup = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-iterations":
+                    iterations = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-time":
+                    nanos = Long.parseLong(args[i + 1]) * 1000000L;
+                    break;
+                case "-benchmarks":
+                    benchmarks = args[i + 1].split(",");
+                    break;
+                case "-seed":
+                    seed = Long.parseLong(args[i + 1]);
+                    break;
+                case "-out":
+                    out = new PrintStream(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option: " + args[i]);
+            }
+        }
+        if (args.length % 2 != 0) {
+            throw new IllegalArgumentException("missing value for " + args[args.length - 1]);
+        }
+
+        out.println(CSV_HEADER);
+        for (String benchmark : benchmarks) {
+            for (int level : levels) {
+                for (int n : junk) {
+                    HotPathBenchmark b = new HotPathBenchmark(level, n, seed);
+                    String row = b.measure(benchmark, warmup, iterations, nanos);
+                    b.close();
+                    out.println(row);
+                    out.flush();
+                    if (out != System.out) {
+                        System.out.println(row);
+                    }
+                }
+            }
+        }
+        out.close();
+    }
+}
@@ -0,0 +1,258 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.awt.AWTException;
+import java.awt.BufferCapabilities;
+import java.awt.Canvas;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.ImageCapabilities;
+import java.awt.Toolkit;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.awt.image.BufferStrategy;
+import java.io.File;
+import java.io.IOException;
+import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
+
+/**
+ * Runs the game in a window of its own instead of as an applet, drawing
+ * actively from a render thread through a BufferStrategy. The back buffers of
+ * the strategy are accelerated VolatileImages where the graphics pipeline
+ * supports them, and frames are paced by a frame limiter instead of a
+ * repaint loop:
+ *
+ * java Launcher [-fps frames] [-gravity name] [-record file]
+ *
+ * -fps 0 draws as fast as possible. The frame rate and frame times are shown
+ * under the status text, the same as in the applet.
+ *
+ * @author Alex Rodrigues
+ */
+public class Launcher extends Canvas implements Runnable {
+
+    private static final long serialVersionUID = 1L;
+    /**
+     * The default frame rate limit.
+     */
+    public static final int DEFAULT_FPS = 60;
+    private final Simulation simulation;
+    private final Renderer renderer = new Renderer();
+    private final FrameTimer frameTimer = new FrameTimer();
+    /*
+     * The time between frames in nanoseconds, 0 for no limit.
+     */
+    private final long frameNanos;
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Creates the canvas the game is drawn on.
+     *
+     * @param simulation The simulation to draw.
+     * @param fps The frame rate limit, or 0 for no limit.
+     */
+    public Launcher(Simulation simulation, int fps) {
+        this.simulation = simulation;
+        this.frameNanos = fps > 0 ? 1000000000L / fps : 0;
+        setPreferredSize(new Dimension(Renderer.RESOLUTION_WIDTH,
+                Renderer.RESOLUTION_HEIGHT));
+        //the render thread draws everything, so the system should not
+        setIgnoreRepaint(true);
+        addKeyListener(new Controls(simulation));
+    }
+
+    /**
+     * Starts the simulation and the render thread. The canvas must be
+     * displayable.
+     */
+    public void start() {
+        createStrategy();
+        simulation.start();
+        running = true;
+        thread = new Thread(this, "render");
+        thread.start();
+    }
+
+    /**
+     * Stops drawing and the simulation.
+     */
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+        simulation.stop();
+    }
+
+    /**
+     * Asks for page flipping between accelerated buffers, and falls back to
+     * whatever the platform gives if it can not have that.
+     */
+    private void createStrategy() {
+        BufferCapabilities accelerated = new BufferCapabilities(
+                new ImageCapabilities(true), new ImageCapabilities(true),
+                BufferCapabilities.FlipContents.UNDEFINED);
+        try {
+            createBufferStrategy(2, accelerated);
+        } catch (AWTException ex) {
+            createBufferStrategy(2);
+        }
+    }
+
+    @Override
+    public void run() {
+        BufferStrategy strategy = getBufferStrategy();
+        long nextFrame = System.nanoTime();
+        while (running) {
+            RenderSnapshot s = simulation.acquireSnapshot();
+            //the buffers are VolatileImages, so their contents can be lost at
+            //any time (the screen mode changed, say) and the frame redrawn
+            do {
+                do {
+                    Graphics g = strategy.getDrawGraphics();
+                    try {
+                        renderer.render(g, s, simulation.getAlpha(s));
+                        renderer.drawFrameTimes(g, frameTimer);
+                    } finally {
+                        g.dispose();
+                    }
+                } while (strategy.contentsRestored());
+                strategy.show();
+            } while (strategy.contentsLost());
+            Toolkit.getDefaultToolkit().sync();
+            frameTimer.frame();
+
+            if (frameNanos > 0) {
+                nextFrame += frameNanos;
+                long now = System.nanoTime();
+                if (nextFrame < now - frameNanos) {
+                    //too far behind to catch up, start pacing from now
+                    nextFrame = now;
+                }
+                sleepUntil(nextFrame);
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Sleeps until the given time. Sleeps are only accurate to a millisecond
+     * or two, so the last part is spent yielding instead.
+     */
+    private static void sleepUntil(long time) {
+        long remaining;
+        while ((remaining = time - System.nanoTime()) > 0) {
+            if (remaining > 2000000) {
+                try {
+                    Thread.sleep((remaining - 1000000) / 1000000);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Gets the frame times.
+     *
+     * @return The frame timer.
+     */
+    public FrameTimer getFrameTimer() {
+        return frameTimer;
+    }
+
+    public static void main(String[] args) {
+        int fps = DEFAULT_FPS;
+        String gravity = null;
+        String record = null;
+        if (args.length % 2 != 0) {
+            throw new IllegalArgumentException("missing value for " + args[args.length - 1]);
+        }
+        for (int i = 0; i < args.length; i += 2) {
+            switch (args[i]) {
+                case "-fps":
+                    fps = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-gravity":
+                    gravity = args[i + 1];
+                    break;
+                case "-record":
+                    record = args[i + 1];
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option: " + args[i]);
+            }
+        }
+
+        final Session session = record != null
+                ? new Session(System.nanoTime(), 2, gravity) : null;
+        final Simulation simulation = new Simulation(session != null
+                ? session.createWorld()
+                : new World(World.createGravitySolver(gravity)), session);
+        final Launcher launcher = new Launcher(simulation, fps);
+        final File recordFile = record != null ? new File(record) : null;
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                final JFrame frame = new JFrame("Space Janitor");
+                frame.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+                frame.setResizable(false);
+                frame.add(launcher);
+                frame.pack();
+                frame.setLocationRelativeTo(null);
+                frame.addWindowListener(new WindowAdapter() {
+                    @Override
+                    public void windowClosing(WindowEvent e) {
+                        launcher.stop();
+                        simulation.close();
+                        if (session != null) {
+                            try {
+                                session.save(recordFile);
+                            } catch (IOException ex) {
+                                System.err.println("could not save the session: "
+                                        + ex.getMessage());
+                            }
+                        }
+                        System.out.println(launcher.getFrameTimer().getFrameCount()
+                                + " frames, last " + launcher.getFrameTimer());
+                        frame.dispose();
+                        System.exit(0);
+                    }
+                });
+                frame.setVisible(true);
+                launcher.requestFocus();
+                launcher.start();
+            }
+        });
+    }
+}
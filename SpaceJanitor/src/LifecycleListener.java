@@ -20,35 +20,27 @@
  * Author: Alex Rodrigues
  */
 
-import java.awt.Polygon;
-
-public class Debris extends GameObject {
-
-    //the amount of time the debris will remain active
-    public int debrisTimeSpan = 25;
-
-    public Debris(double x, double y) {
-
-        createShape();
-        xPosition = x;
-        yPosition = y;
-        double a = Math.random() * 2 * Math.PI;
-        xVelocity = Math.cos(a) * a;
-        yVelocity = Math.sin(a) * a;
-        this.setActive();
-    }
+/**
+ * Told when objects join or leave an EntityStore through its deferred
+ * spawn and despawn queues.
+ *
+ * @author Alex Rodrigues
+ */
+public interface LifecycleListener<T extends GameObject> {
 
-    @Override
-    public void createShape() {
-        shape = new Polygon();
-        shape.addPoint(1, 1);
-        shape.addPoint(-1, -1);
-        shape.addPoint(-1, 1);
-        shape.addPoint(1, -1);
-        drawShape = Game.copyPolygon(shape);
-    }
+    /**
+     * Called after an object has been added to the end of the list.
+     *
+     * @param obj The object.
+     */
+    void spawned(T obj);
 
-    public boolean remove() {
-        return this.counter >= debrisTimeSpan;
-    }
+    /**
+     * Called just before an object is removed from the list, while its state
+     * can still be read. Objects spawned from here are added in the same
+     * commit.
+     *
+     * @param obj The object.
+     */
+    void despawned(T obj);
 }
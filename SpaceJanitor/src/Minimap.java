@@ -0,0 +1,173 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * A small map of the whole world. The map is kept in an image that is redrawn
+ * from the object positions in a snapshot every few ticks by writing straight
+ * into its pixels, and drawing the map is a single drawImage of that image.
+ *
+ * @author Alex Rodrigues
+ */
+public class Minimap {
+
+    /*
+     * The colors of the map, as ARGB pixels.
+     */
+    private static final int BORDER = 0xffffffff;
+    private static final int BACKGROUND = 0x7d808080;
+    private static final int JUNK = 0xffff0000;
+    private static final int PLANET = 0xff0000ff;
+    private static final int SHIP = 0xff00ff00;
+    /*
+     * The width and height of the map in pixels, not counting the border.
+     */
+    private final int size;
+    private final BufferedImage image;
+    private final int[] pixels;
+    /*
+     * The number of ticks between rebuilds of the map.
+     */
+    private int interval;
+    /*
+     * The tick and level the map was last built for.
+     */
+    private long builtTick = -1;
+    private int builtLevel;
+
+    /**
+     * Creates a minimap.
+     *
+     * @param size The width and height of the map in pixels, not counting
+     * the one pixel border.
+     * @param interval The number of ticks between rebuilds of the map.
+     */
+    public Minimap(int size, int interval) {
+        this.size = size;
+        image = new BufferedImage(size + 1, size + 1, BufferedImage.TYPE_INT_ARGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        setInterval(interval);
+    }
+
+    /**
+     * Sets how often the map is rebuilt. The map is always rebuilt straight
+     * away when a new level starts.
+     *
+     * @param interval The number of ticks between rebuilds, 1 or more.
+     */
+    public final void setInterval(int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("interval must be 1 or more: " + interval);
+        }
+        this.interval = interval;
+    }
+
+    /**
+     * Draws the map, rebuilding it first if it is out of date.
+     *
+     * @param g The screens graphics.
+     * @param s The snapshot to draw.
+     * @param x The x location of the map on the screen.
+     * @param y The y location of the map on the screen.
+     */
+    public void draw(Graphics g, RenderSnapshot s, int x, int y) {
+        if (builtTick < 0 || s.tick < builtTick
+                || s.tick - builtTick >= interval || s.level != builtLevel) {
+            rebuild(s);
+        }
+        g.drawImage(image, x, y, null);
+    }
+
+    /**
+     * Redraws the map from the positions in a snapshot.
+     *
+     * @param s The snapshot.
+     */
+    void rebuild(RenderSnapshot s) {
+        int width = size + 1;
+        for (int y = 0; y < width; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                boolean edge = x == 0 || y == 0 || x == size || y == size;
+                pixels[row + x] = edge ? BORDER : BACKGROUND;
+            }
+        }
+        for (int i = 0; i < s.dormantCount; i++) {
+            plot(s, s.dormantX[i], s.dormantY[i], s.dormantSize[i], JUNK);
+        }
+        plotKind(s, RenderSnapshot.JUNK, JUNK);
+        plotKind(s, RenderSnapshot.PLANET, PLANET);
+        plot(s, RenderSnapshot.SHIP, SHIP);
+        builtTick = s.tick;
+        builtLevel = s.level;
+    }
+
+    private void plotKind(RenderSnapshot s, int kind, int color) {
+        for (int i = s.kindStart[kind]; i < s.kindStart[kind + 1]; i++) {
+            plot(s, i, color);
+        }
+    }
+
+    /**
+     * Draws an object as a dot the size of its minimap size.
+     *
+     * @param s The snapshot.
+     * @param i The index of the object in the snapshot.
+     * @param color The color of the dot.
+     */
+    private void plot(RenderSnapshot s, int i, int color) {
+        if (s.active[i]) {
+            plot(s, s.x1[i], s.y1[i], s.objects[i].minimapSize, color);
+        }
+    }
+
+    /**
+     * Draws a dot at a position in the world.
+     *
+     * @param s The snapshot.
+     * @param xPosition The x position.
+     * @param yPosition The y position.
+     * @param d The size of the dot.
+     * @param color The color of the dot.
+     */
+    private void plot(RenderSnapshot s, double xPosition, double yPosition,
+            int d, int color) {
+        int left = 1 + (int) (xPosition / s.spaceWidth * (size - 2)) - d / 2;
+        int top = 1 + (int) (yPosition / s.spaceHeight * (size - 2)) - d / 2;
+        //twice the offset from the center of the dot, so odd and even sizes
+        //both work in whole numbers
+        int r2 = d * d;
+        for (int y = Math.max(top, 1); y < Math.min(top + d, size); y++) {
+            int dy = 2 * (y - top) + 1 - d;
+            int row = y * (size + 1);
+            for (int x = Math.max(left, 1); x < Math.min(left + d, size); x++) {
+                int dx = 2 * (x - left) + 1 - d;
+                if (dx * dx + dy * dy <= r2) {
+                    pixels[row + x] = color;
+                }
+            }
+        }
+    }
+}
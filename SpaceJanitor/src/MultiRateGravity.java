@@ -0,0 +1,361 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.util.Arrays;
+
+/**
+ * Applies gravity by evaluating every interacting pair, like PairwiseGravity,
+ * but only evaluates the pairs that are far apart every few ticks. Past the
+ * 2500 pixel clamp in GameObject.applyGravitationalAttraction the force falls
+ * off slowly and the objects move a few pixels a tick, so the pull between
+ * two far away objects hardly changes from one tick to the next.
+ *
+ * On a refresh every pair is evaluated. The pull of the pairs at least the
+ * near radius apart is summed into a far pull for each object, which is then
+ * added to its velocity every tick until the next refresh, and the pairs
+ * closer than that are remembered and evaluated every tick. The time between
+ * refreshes is either fixed, or worked out at each refresh from the fastest
+ * object so that a far pair can not move relative to each other by more than
+ * the tolerance times the near radius before the next one; the pull between
+ * them then changes by about that fraction at most.
+ *
+ * Bullets are fast and short lived, so their pairs are evaluated every tick.
+ * Objects that join or come back between refreshes are evaluated against
+ * everything every tick until the next refresh, and the pull of objects that
+ * leave stays in the far pulls until then. When many objects join at once, for example
+ * when a level is loaded, the solver refreshes straight away.
+ *
+ * @author Alex Rodrigues
+ */
+public class MultiRateGravity implements GravitySolver {
+
+    /**
+     * The default distance past which pairs are refreshed less often.
+     */
+    public static final double NEAR_RADIUS = 8000;
+    /**
+     * The default tolerance for the change in the pull between far pairs.
+     */
+    public static final double TOLERANCE = 0.05;
+    /**
+     * The most ticks between refreshes when the interval is adaptive.
+     */
+    public static final int MAX_INTERVAL = 32;
+    private final double nearRadius;
+    private final double tolerance;
+    private final int fixedInterval;
+    /*
+     * The ticks between the last refresh and the next, the ticks since the
+     * last refresh, and a number for each refresh and each tick that is
+     * stamped on the objects.
+     */
+    private int interval;
+    private int sinceRefresh;
+    private int refresh;
+    private int tick;
+    /*
+     * The ship, the planets and the junk this tick, in that order.
+     */
+    private GameObject[] objects = new GameObject[256];
+    private int count;
+    private int junkStart;
+    /*
+     * The pairs closer than the near radius at the last refresh.
+     */
+    private GameObject[] nearFirst = new GameObject[256];
+    private GameObject[] nearSecond = new GameObject[256];
+    private int nearCount;
+    /*
+     * The objects this tick that joined since the last refresh, by index in
+     * objects.
+     */
+    private int[] joined = new int[64];
+    private int joinedCount;
+    /*
+     * The pair evaluations done and skipped so far.
+     */
+    private long evaluated, skipped;
+
+    /**
+     * Creates a solver that works out how often to refresh the far pairs.
+     *
+     * @param nearRadius The distance past which pairs are refreshed less
+     * often.
+     * @param tolerance How far a far pair may move relative to each other
+     * between refreshes, as a fraction of the near radius.
+     */
+    public MultiRateGravity(double nearRadius, double tolerance) {
+        this(nearRadius, tolerance, 0);
+    }
+
+    /**
+     * Creates a solver that refreshes the far pairs at a fixed interval.
+     *
+     * @param nearRadius The distance past which pairs are refreshed less
+     * often.
+     * @param interval The ticks between refreshes.
+     */
+    public MultiRateGravity(double nearRadius, int interval) {
+        this(nearRadius, 0, interval);
+        if (interval < 1) {
+            throw new IllegalArgumentException("interval must be 1 or more: "
+                    + interval);
+        }
+    }
+
+    private MultiRateGravity(double nearRadius, double tolerance, int interval) {
+        if (!(nearRadius >= 0) || !(tolerance >= 0)) {
+            throw new IllegalArgumentException("bad near radius or tolerance: "
+                    + nearRadius + ", " + tolerance);
+        }
+        this.nearRadius = nearRadius;
+        this.tolerance = tolerance;
+        this.fixedInterval = interval;
+    }
+
+    @Override
+    public void apply(Spacecraft ship, EntityStore<Planet> planets,
+            EntityStore<SpaceJunk> junk, EntityStore<Bullet> bullets) {
+        tick++;
+        collect(ship, planets, junk);
+        long before = evaluated;
+        if (sinceRefresh >= interval || joinedCount > count / 4) {
+            refresh();
+        } else {
+            sinceRefresh++;
+            applyCached();
+        }
+        for (int b = 0; b < bullets.size(); b++) {
+            Bullet bullet = bullets.get(b);
+            for (int i = 1; i < count; i++) {
+                objects[i].applyGravitationalAttraction(bullet);
+            }
+        }
+        evaluated += (long) bullets.size() * (count - 1);
+
+        long p = planets.size();
+        long pairs = p * (p - 1) / 2 + p * junk.size() + p + junk.size()
+                + (long) bullets.size() * (count - 1);
+        skipped += pairs - (evaluated - before);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Gets the number of pair evaluations done so far.
+     *
+     * @return The number of pairs evaluated.
+     */
+    public long getEvaluatedPairs() {
+        return evaluated;
+    }
+
+    /**
+     * Gets the number of pair evaluations that evaluating every pair every
+     * tick would have done but this solver did not.
+     *
+     * @return The number of pairs skipped.
+     */
+    public long getSkippedPairs() {
+        return skipped;
+    }
+
+    /**
+     * Gets the ticks between the last refresh and the next.
+     *
+     * @return The interval.
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Lists the ship, planets and junk, stamps them with this tick and finds
+     * the ones that joined since the last refresh.
+     */
+    private void collect(Spacecraft ship, EntityStore<Planet> planets,
+            EntityStore<SpaceJunk> junk) {
+        int n = 1 + planets.size() + junk.size();
+        if (objects.length < n) {
+            objects = new GameObject[Math.max(n, objects.length * 2)];
+        }
+        count = 0;
+        joinedCount = 0;
+        add(ship);
+        for (int i = 0; i < planets.size(); i++) {
+            add(planets.get(i));
+        }
+        junkStart = count;
+        for (int i = 0; i < junk.size(); i++) {
+            add(junk.get(i));
+        }
+    }
+
+    private void add(GameObject obj) {
+        if (obj.gravityTick != tick - 1) {
+            //it was not in the world last tick, so its far pull and near
+            //pairs may be missing pulls from while it was gone
+            obj.farPullRefresh = 0;
+        }
+        obj.gravityTick = tick;
+        if (obj.farPullRefresh != refresh || refresh == 0) {
+            if (joinedCount == joined.length) {
+                joined = Arrays.copyOf(joined, joinedCount * 2);
+            }
+            joined[joinedCount++] = count;
+        }
+        objects[count++] = obj;
+    }
+
+    /**
+     * Evaluates every pair, sums the far pulls and remembers the near pairs,
+     * and works out when to refresh next.
+     */
+    private void refresh() {
+        refresh++;
+        sinceRefresh = 1;
+        nearCount = 0;
+        //the ship is always first
+        double g = objects[0].world.gravitationalConstant();
+        double near2 = nearRadius * nearRadius;
+        double fastest = 0;
+        for (int i = 0; i < count; i++) {
+            GameObject obj = objects[i];
+            obj.farPullX = 0;
+            obj.farPullY = 0;
+            obj.farPullRefresh = refresh;
+            EntityStore<?> s = obj.store;
+            int id = obj.id;
+            double vx = s.xVelocity[id] + s.prefXdir[id] * s.prefSpeed[id];
+            double vy = s.yVelocity[id] + s.prefYdir[id] * s.prefSpeed[id];
+            fastest = Math.max(fastest, vx * vx + vy * vy);
+        }
+        for (int i = 0; i < count; i++) {
+            //junk only attracts the ship and the planets, which come first
+            int end = i < junkStart ? count : 0;
+            GameObject a = objects[i];
+            EntityStore<?> s1 = a.store;
+            int i1 = a.id;
+            for (int j = i + 1; j < end; j++) {
+                GameObject b = objects[j];
+                EntityStore<?> s2 = b.store;
+                int i2 = b.id;
+                double x = s2.xPosition[i2] - s1.xPosition[i1];
+                double y = s2.yPosition[i2] - s1.yPosition[i1];
+                double r2 = x * x + y * y;
+                if (r2 < near2) {
+                    addNearPair(a, b);
+                    continue;
+                }
+                //the same force law as applyGravitationalAttraction
+                double r = Math.sqrt(r2);
+                r = Math.max(r, 2500);
+                double gForce = g * ((s2.mass[i2] * s1.mass[i1]) / (1 + r));
+                x /= r;
+                y /= r;
+                a.farPullX += x * gForce / s1.mass[i1] * s1.gInfluence[i1];
+                a.farPullY += y * gForce / s1.mass[i1] * s1.gInfluence[i1];
+                b.farPullX -= x * gForce / s2.mass[i2] * s2.gInfluence[i2];
+                b.farPullY -= y * gForce / s2.mass[i2] * s2.gInfluence[i2];
+            }
+            if (end > i) {
+                evaluated += end - i - 1;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            objects[i].addVelocity(objects[i].farPullX, objects[i].farPullY);
+        }
+        for (int k = 0; k < nearCount; k++) {
+            nearFirst[k].applyGravitationalAttraction(nearSecond[k]);
+        }
+
+        if (fixedInterval > 0) {
+            interval = fixedInterval;
+        } else {
+            //two far objects close in on each other at twice the top speed
+            double closing = 2 * Math.sqrt(fastest);
+            interval = closing == 0 ? MAX_INTERVAL : (int) Math.max(1,
+                    Math.min(MAX_INTERVAL, tolerance * nearRadius / closing));
+        }
+    }
+
+    /**
+     * Adds the far pulls from the last refresh, evaluates the near pairs
+     * that are still in the world, and evaluates the objects that joined
+     * since the last refresh against everything.
+     */
+    private void applyCached() {
+        for (int i = 0; i < count; i++) {
+            GameObject obj = objects[i];
+            if (obj.farPullRefresh == refresh) {
+                obj.addVelocity(obj.farPullX, obj.farPullY);
+            }
+        }
+        int kept = 0;
+        for (int k = 0; k < nearCount; k++) {
+            GameObject a = nearFirst[k], b = nearSecond[k];
+            if (a.gravityTick != tick || b.gravityTick != tick
+                    || a.farPullRefresh != refresh || b.farPullRefresh != refresh) {
+                //one of them has left the world, maybe to come back as
+                //something else from a pool
+                continue;
+            }
+            a.applyGravitationalAttraction(b);
+            nearFirst[kept] = a;
+            nearSecond[kept] = b;
+            kept++;
+        }
+        Arrays.fill(nearFirst, kept, nearCount, null);
+        Arrays.fill(nearSecond, kept, nearCount, null);
+        nearCount = kept;
+        evaluated += kept;
+
+        for (int k = 0; k < joinedCount; k++) {
+            int i = joined[k];
+            GameObject a = objects[i];
+            //junk only attracts the ship and the planets, which come first
+            int end = i < junkStart ? count : junkStart;
+            for (int j = 0; j < end; j++) {
+                GameObject b = objects[j];
+                if (j == i || (b.farPullRefresh != refresh && j < i)) {
+                    //itself, or a pair of joined objects that was done
+                    //when the other one was
+                    continue;
+                }
+                a.applyGravitationalAttraction(b);
+                evaluated++;
+            }
+        }
+    }
+
+    private void addNearPair(GameObject a, GameObject b) {
+        if (nearCount == nearFirst.length) {
+            nearFirst = Arrays.copyOf(nearFirst, nearCount * 2);
+            nearSecond = Arrays.copyOf(nearSecond, nearCount * 2);
+        }
+        nearFirst[nearCount] = a;
+        nearSecond[nearCount] = b;
+        nearCount++;
+    }
+}
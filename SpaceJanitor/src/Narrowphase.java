@@ -0,0 +1,128 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.awt.Polygon;
+
+/**
+ * Exact overlap tests between the draw shapes of game objects, for the pairs
+ * the broadphase hands over. The shapes are convex, so two shapes overlap
+ * unless one of their edges separates them, and a circle overlaps a shape
+ * when its center is inside or an edge passes closer than its radius.
+ *
+ * The tests work straight on the whole pixel vertices of the draw shapes,
+ * which GameObject keeps up to date once per tick, so nothing is allocated
+ * or recomputed here. Shapes that touch count as overlapping.
+ *
+ * @author Alex Rodrigues
+ */
+public final class Narrowphase {
+
+    private Narrowphase() {
+    }
+
+    /**
+     * Return true iff two convex polygons overlap or touch.
+     *
+     * @param a The first polygon.
+     * @param b The second polygon.
+     * @return True iff no edge of either polygon separates them.
+     */
+    public static boolean polygonsOverlap(Polygon a, Polygon b) {
+        return !hasSeparatingEdge(a, b) && !hasSeparatingEdge(b, a);
+    }
+
+    /**
+     * Return true iff a circle overlaps a convex polygon.
+     *
+     * @param cx The x coordinate of the center of the circle.
+     * @param cy The y coordinate of the center of the circle.
+     * @param radius The radius of the circle.
+     * @param p The polygon.
+     * @return True iff the center is inside the polygon or some edge of the
+     * polygon is closer to the center than the radius.
+     */
+    public static boolean circleOverlapsPolygon(double cx, double cy,
+            double radius, Polygon p) {
+        int n = p.npoints;
+        int[] xs = p.xpoints, ys = p.ypoints;
+        double r2 = radius * radius;
+        //the center is inside when it is on the same side of every edge
+        int positive = 0, negative = 0;
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            double ex = xs[i] - xs[j];
+            double ey = ys[i] - ys[j];
+            double px = cx - xs[j];
+            double py = cy - ys[j];
+            double cross = ex * py - ey * px;
+            if (cross > 0) {
+                positive++;
+            } else if (cross < 0) {
+                negative++;
+            }
+            //squared distance from the center to the edge
+            double length2 = ex * ex + ey * ey;
+            double t = length2 > 0 ? (px * ex + py * ey) / length2 : 0;
+            t = Math.max(0, Math.min(1, t));
+            double dx = px - t * ex;
+            double dy = py - t * ey;
+            if (dx * dx + dy * dy < r2) {
+                return true;
+            }
+        }
+        //a shape squashed to a point or a line has no inside
+        return (positive == 0) != (negative == 0);
+    }
+
+    /**
+     * Return true iff the line of some edge of a has all of a on one side and
+     * all of b on the other.
+     */
+    private static boolean hasSeparatingEdge(Polygon a, Polygon b) {
+        int n = a.npoints, m = b.npoints;
+        int[] ax = a.xpoints, ay = a.ypoints;
+        int[] bx = b.xpoints, by = b.ypoints;
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            //the normal of the edge from vertex j to vertex i
+            long nx = ay[j] - ay[i];
+            long ny = ax[i] - ax[j];
+            if (nx == 0 && ny == 0) {
+                continue;
+            }
+            long minA = Long.MAX_VALUE, maxA = Long.MIN_VALUE;
+            for (int k = 0; k < n; k++) {
+                long d = nx * ax[k] + ny * ay[k];
+                minA = Math.min(minA, d);
+                maxA = Math.max(maxA, d);
+            }
+            long minB = Long.MAX_VALUE, maxB = Long.MIN_VALUE;
+            for (int k = 0; k < m; k++) {
+                long d = nx * bx[k] + ny * by[k];
+                minB = Math.min(minB, d);
+                maxB = Math.max(maxB, d);
+            }
+            if (maxA < minB || maxB < minA) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
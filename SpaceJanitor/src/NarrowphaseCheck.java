@@ -0,0 +1,272 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.awt.Polygon;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Checks the collision tests of GameObject and Planet against the tests they
+ * replaced, which looked for a vertex of one shape inside the other with
+ * Polygon.contains, or for a vertex inside the planet. The shapes of the game
+ * are thrown together at random and both tests are run on every pair:
+ *
+ * java NarrowphaseCheck [pairs] [seed]
+ *
+ * The new tests must find every collision the old ones did. They also find
+ * shapes that cross without either holding a vertex of the other, and every
+ * one of those is confirmed with an edge by edge intersection test. The check
+ * exits with status 1 if a collision is missed or an extra one can not be
+ * confirmed.
+ *
+ * @author Alex Rodrigues
+ */
+public class NarrowphaseCheck {
+
+    /*
+     * The number of pairs where both tests collide, neither does, only the
+     * old test does, only the new test does, and only the new test does
+     * without the shapes really touching.
+     */
+    private long both, neither, missed, extra, unconfirmed;
+
+    /**
+     * Tests one pair of objects.
+     *
+     * @param a The first object.
+     * @param b The second object.
+     */
+    void check(GameObject a, GameObject b) {
+        boolean reference = a instanceof Planet ? referencePlanet((Planet) a, b)
+                : reference(a, b);
+        boolean result = a.isColliding(b);
+        if (reference && result) {
+            both++;
+        } else if (!reference && !result) {
+            neither++;
+        } else if (reference) {
+            missed++;
+        } else {
+            extra++;
+            boolean real = a instanceof Planet ? planetTouches((Planet) a, b)
+                    : shapesTouch(a.drawShape, b.drawShape);
+            if (!real) {
+                unconfirmed++;
+            }
+        }
+    }
+
+    /**
+     * The old GameObject.isColliding: a vertex of either shape inside the
+     * other.
+     */
+    static boolean reference(GameObject a, GameObject b) {
+        for (int i = 0; i < b.drawShape.npoints; i++) {
+            if (a.drawShape.contains(b.drawShape.xpoints[i], b.drawShape.ypoints[i])) {
+                return true;
+            }
+        }
+        for (int i = 0; i < a.drawShape.npoints; i++) {
+            if (b.drawShape.contains(a.drawShape.xpoints[i], a.drawShape.ypoints[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The old Planet.isColliding: a vertex of the shape well inside the
+     * planet.
+     */
+    static boolean referencePlanet(Planet p, GameObject b) {
+        int x1 = (int) (p.getXPosition());
+        int y1 = (int) (p.getYPosition());
+        for (int i = 0; i < b.drawShape.npoints; i++) {
+            double xDiff = Math.abs(b.drawShape.xpoints[i] - x1);
+            double yDiff = Math.abs(b.drawShape.ypoints[i] - y1);
+            double m = Math.max(xDiff, yDiff);
+            double d = m * Math.sqrt(Math.pow(xDiff / m, 2)
+                    + Math.pow(yDiff / m, 2));
+            if (d < 0.98 * p.diameter / 2) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return true iff two shapes share a point: an edge of one crosses or
+     * touches an edge of the other, or one holds a vertex of the other.
+     */
+    static boolean shapesTouch(Polygon a, Polygon b) {
+        for (int i = 0, j = a.npoints - 1; i < a.npoints; j = i++) {
+            for (int k = 0, l = b.npoints - 1; k < b.npoints; l = k++) {
+                if (segmentsTouch(a.xpoints[j], a.ypoints[j], a.xpoints[i],
+                        a.ypoints[i], b.xpoints[l], b.ypoints[l],
+                        b.xpoints[k], b.ypoints[k])) {
+                    return true;
+                }
+            }
+        }
+        return contains(a, b.xpoints[0], b.ypoints[0])
+                || contains(b, a.xpoints[0], a.ypoints[0]);
+    }
+
+    /**
+     * Return true iff a shape comes closer to the middle of a planet than the
+     * planets collision radius, found by walking along its edges a pixel at a
+     * time.
+     */
+    static boolean planetTouches(Planet p, GameObject b) {
+        int cx = (int) (p.getXPosition());
+        int cy = (int) (p.getYPosition());
+        double r = 0.98 * p.diameter / 2;
+        if (contains(b.drawShape, cx, cy)) {
+            return true;
+        }
+        Polygon s = b.drawShape;
+        for (int i = 0, j = s.npoints - 1; i < s.npoints; j = i++) {
+            double ex = s.xpoints[i] - s.xpoints[j];
+            double ey = s.ypoints[i] - s.ypoints[j];
+            int steps = (int) Math.ceil(Math.hypot(ex, ey)) * 4 + 1;
+            for (int k = 0; k <= steps; k++) {
+                double x = s.xpoints[j] + ex * k / steps;
+                double y = s.ypoints[j] + ey * k / steps;
+                //half a pixel of slack for the walk
+                if (Math.hypot(x - cx, y - cy) < r + 0.5) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean segmentsTouch(long x1, long y1, long x2, long y2,
+            long x3, long y3, long x4, long y4) {
+        long d1 = orient(x3, y3, x4, y4, x1, y1);
+        long d2 = orient(x3, y3, x4, y4, x2, y2);
+        long d3 = orient(x1, y1, x2, y2, x3, y3);
+        long d4 = orient(x1, y1, x2, y2, x4, y4);
+        if (((d1 > 0 && d2 < 0) || (d1 < 0 && d2 > 0))
+                && ((d3 > 0 && d4 < 0) || (d3 < 0 && d4 > 0))) {
+            return true;
+        }
+        return (d1 == 0 && onSegment(x3, y3, x4, y4, x1, y1))
+                || (d2 == 0 && onSegment(x3, y3, x4, y4, x2, y2))
+                || (d3 == 0 && onSegment(x1, y1, x2, y2, x3, y3))
+                || (d4 == 0 && onSegment(x1, y1, x2, y2, x4, y4));
+    }
+
+    private static long orient(long ax, long ay, long bx, long by, long cx,
+            long cy) {
+        return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+    }
+
+    private static boolean onSegment(long ax, long ay, long bx, long by,
+            long px, long py) {
+        return Math.min(ax, bx) <= px && px <= Math.max(ax, bx)
+                && Math.min(ay, by) <= py && py <= Math.max(ay, by);
+    }
+
+    /**
+     * Return true iff a point is inside or on a convex shape.
+     */
+    private static boolean contains(Polygon p, long x, long y) {
+        int positive = 0, negative = 0;
+        for (int i = 0, j = p.npoints - 1; i < p.npoints; j = i++) {
+            long o = orient(p.xpoints[j], p.ypoints[j], p.xpoints[i],
+                    p.ypoints[i], x, y);
+            if (o > 0) {
+                positive++;
+            } else if (o < 0) {
+                negative++;
+            }
+        }
+        return (positive == 0) != (negative == 0);
+    }
+
+    /**
+     * Puts an object at a random place near the origin, facing a random way.
+     * A bullet is given a random move of up to twice its speed, so it is a
+     * line like the one it sweeps in a tick.
+     */
+    private static void place(GameObject obj, Random random, double spread) {
+        obj.setPosition(spread * (random.nextDouble() - 0.5),
+                spread * (random.nextDouble() - 0.5));
+        obj.setAngle(random.nextDouble() * 2 * Math.PI);
+        if (obj instanceof Bullet) {
+            double a = random.nextDouble() * 2 * Math.PI;
+            double d = random.nextDouble() * 2 * ((Bullet) obj).speedFactor;
+            ((Bullet) obj).setPreviousPosition(obj.getXPosition() - Math.cos(a) * d,
+                    obj.getYPosition() - Math.sin(a) * d);
+        }
+        obj.updateDrawShape();
+    }
+
+    public static void main(String[] args) {
+        int pairs = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        Random random = new Random(seed);
+        //the shapes are made for a world that is never stepped
+        World world = new World(new PairwiseGravity(), 5, seed);
+
+        GameObject[] shapes = {new Spacecraft(world),
+            new SpaceJunk(world, 0, 0, 1), new SpaceJunk(world, 0, 0, 2),
+            new SpaceJunk(world, 0, 0, 3), new Bullet(world, 0, 0, 0, 0, 0)};
+        NarrowphaseCheck polygons = new NarrowphaseCheck();
+        NarrowphaseCheck planets = new NarrowphaseCheck();
+        for (int i = 0; i < pairs; i++) {
+            GameObject b = shapes[random.nextInt(shapes.length)];
+            if (i % 4 == 0) {
+                Planet p = new Planet(world);
+                p.setPosition(0, 0);
+                place(b, random, p.diameter + 2 * b.getBoundingRadius());
+                planets.check(p, b);
+                //the world keeps every object that is in no list, see
+                //EntityStore.attach, so give the planet up
+                world.detached.remove(p.id);
+            } else {
+                //a bullet can not hit another bullet, nor the ship the ship
+                GameObject a = shapes[random.nextInt(shapes.length - 1)];
+                if (a == b) {
+                    continue;
+                }
+                place(a, random, 0);
+                place(b, random, 2 * (a.getBoundingRadius() + b.getBoundingRadius()));
+                polygons.check(a, b);
+            }
+        }
+        polygons.print("polygons");
+        planets.print("planets");
+        world.close();
+        if (polygons.missed + polygons.unconfirmed + planets.missed
+                + planets.unconfirmed > 0) {
+            System.exit(1);
+        }
+    }
+
+    private void print(String name) {
+        System.out.printf(Locale.ROOT, "%-9s both %d, neither %d, missed %d,"
+                + " extra %d (%d unconfirmed)%n", name, both, neither, missed,
+                extra, unconfirmed);
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+/**
+ * Applies gravity by evaluating every interacting pair of objects directly.
+ * This is exact but grows quadratically with the number of objects, so it is
+ * mostly useful as a reference for the other solvers.
+ *
+ * @author Alex Rodrigues
+ */
+public class PairwiseGravity implements GravitySolver {
+
+    @Override
+    public void apply(Spacecraft ship, EntityStore<Planet> planets,
+            EntityStore<SpaceJunk> junk, EntityStore<Bullet> bullets) {
+
+        for (int i = 0; i < planets.size(); i++) {
+            for (int j = i + 1; j < planets.size(); j++) {
+                planets.get(i).applyGravitationalAttraction(planets.get(j));
+            }
+            planets.get(i).applyGravitationalAttraction(ship);
+
+            for (int a = 0; a < junk.size(); a++) {
+                planets.get(i).applyGravitationalAttraction(junk.get(a));
+            }
+
+            for (int b = 0; b < bullets.size(); b++) {
+                planets.get(i).applyGravitationalAttraction(bullets.get(b));
+            }
+        }
+
+        for (int a = 0; a < junk.size(); a++) {
+            ship.applyGravitationalAttraction(junk.get(a));
+            for (int b = 0; b < bullets.size(); b++) {
+                junk.get(a).applyGravitationalAttraction(bullets.get(b));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,315 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Applies gravity by evaluating every interacting pair, like PairwiseGravity,
+ * but spread over a fork/join pool.
+ *
+ * The work is split into blocks of a fixed size that does not depend on the
+ * number of threads. Each block reads the positions straight from the entity
+ * stores, which do not change until all the blocks are done, and adds its
+ * velocity changes into its own accumulators, so no two threads ever write
+ * the same value. The accumulators
+ * are then added up in block order on the calling thread, which gives the
+ * same bits for any number of threads.
+ *
+ * @author Alex Rodrigues
+ */
+public class ParallelGravity implements GravitySolver {
+
+    /*
+     * The number of planets or pieces of junk handled by one block.
+     */
+    private static final int PLANET_BLOCK = 16;
+    private static final int JUNK_BLOCK = 256;
+    private final ForkJoinPool pool;
+    /*
+     * The planets, junk and bullets, and the ship as a single body.
+     */
+    private final Bodies planets = new Bodies();
+    private final Bodies junk = new Bodies();
+    private final Bodies bullets = new Bodies();
+    private final Bodies ship = new Bodies();
+    /*
+     * The blocks of work. These are reused from tick to tick.
+     */
+    private final List<Block> blocks = new ArrayList<>();
+    private final Root root = new Root();
+    private int blockCount;
+
+    /**
+     * Creates a solver that uses one thread per available processor.
+     */
+    public ParallelGravity() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a solver.
+     *
+     * @param threads The number of threads to use.
+     */
+    public ParallelGravity(int threads) {
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Gets the number of threads used.
+     *
+     * @return The number of threads.
+     */
+    public int getThreads() {
+        return pool.getParallelism();
+    }
+
+    @Override
+    public void apply(Spacecraft ship, EntityStore<Planet> planets,
+            EntityStore<SpaceJunk> junk, EntityStore<Bullet> bullets) {
+        this.planets.load(planets);
+        this.junk.load(junk);
+        this.bullets.load(bullets);
+        this.ship.load(ship);
+
+        double g = ship.world.gravitationalConstant();
+        blockCount = 0;
+        for (int i = 0; i < planets.size(); i += PLANET_BLOCK) {
+            nextBlock().set(true, i, Math.min(i + PLANET_BLOCK, planets.size()), g);
+        }
+        for (int i = 0; i < junk.size(); i += JUNK_BLOCK) {
+            nextBlock().set(false, i, Math.min(i + JUNK_BLOCK, junk.size()), g);
+        }
+        root.reinitialize();
+        pool.invoke(root);
+
+        //add up the blocks in a fixed order
+        for (int k = 0; k < blockCount; k++) {
+            Block b = blocks.get(k);
+            this.planets.reduce(b.planetDvx, b.planetDvy);
+            this.ship.reduce(b.shipDvx, b.shipDvy);
+            this.bullets.reduce(b.bulletDvx, b.bulletDvy);
+        }
+        this.planets.store(planets);
+        this.junk.store(junk);
+        this.bullets.store(bullets);
+        this.ship.store(ship);
+    }
+
+    /**
+     * Shuts down the pool. Its threads finish the work in progress and exit.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private Block nextBlock() {
+        if (blockCount == blocks.size()) {
+            blocks.add(new Block());
+        }
+        return blocks.get(blockCount++);
+    }
+
+    /**
+     * Evaluates one pair exactly like GameObject.applyGravitationalAttraction,
+     * adding the velocity changes to the given accumulators.
+     */
+    private static void attract(Bodies a, int i, double[] aDvx, double[] aDvy,
+            int ai, Bodies b, int j, double[] bDvx, double[] bDvy, int bj,
+            double g) {
+        double x = b.x[j] - a.x[i];
+        double y = b.y[j] - a.y[i];
+        double r = Math.sqrt(x * x + y * y);
+
+        if (r > 100) {
+            r = Math.max(r, 2500);
+            double gForce = g * ((b.mass[j] * a.mass[i]) / (1 + r));
+            x /= r;
+            y /= r;
+            aDvx[ai] += x * gForce / a.mass[i] * a.gInfluence[i];
+            aDvy[ai] += y * gForce / a.mass[i] * a.gInfluence[i];
+            bDvx[bj] -= x * gForce / b.mass[j] * b.gInfluence[j];
+            bDvy[bj] -= y * gForce / b.mass[j] * b.gInfluence[j];
+        }
+    }
+
+    /**
+     * The state of a group of objects that gravity needs, and the total
+     * change in their velocity.
+     */
+    private static final class Bodies {
+
+        double[] x, y, mass, gInfluence;
+        double[] dvx = new double[0], dvy = new double[0];
+        int size;
+
+        /**
+         * Reads a list straight from the arrays of its store.
+         */
+        void load(EntityStore<?> list) {
+            x = list.xPosition;
+            y = list.yPosition;
+            mass = list.mass;
+            gInfluence = list.gInfluence;
+            resize(list.size());
+        }
+
+        /**
+         * Copies a single object, since it may not be first in its store.
+         */
+        void load(GameObject obj) {
+            if (x == null || x.length != 1) {
+                x = new double[1];
+                y = new double[1];
+                mass = new double[1];
+                gInfluence = new double[1];
+            }
+            x[0] = obj.getXPosition();
+            y[0] = obj.getYPosition();
+            mass[0] = obj.getMass();
+            gInfluence[0] = obj.getGInfluence();
+            resize(1);
+        }
+
+        private void resize(int n) {
+            size = n;
+            if (dvx.length < n) {
+                dvx = new double[n];
+                dvy = new double[n];
+            }
+            Arrays.fill(dvx, 0, n, 0);
+            Arrays.fill(dvy, 0, n, 0);
+        }
+
+        void reduce(double[] blockDvx, double[] blockDvy) {
+            for (int i = 0; i < size; i++) {
+                dvx[i] += blockDvx[i];
+                dvy[i] += blockDvy[i];
+            }
+        }
+
+        void store(EntityStore<?> list) {
+            for (int i = 0; i < size; i++) {
+                list.xVelocity[i] += dvx[i];
+                list.yVelocity[i] += dvy[i];
+            }
+        }
+
+        void store(GameObject obj) {
+            obj.addVelocity(dvx[0], dvy[0]);
+        }
+    }
+
+    /**
+     * Runs all the blocks.
+     */
+    private final class Root extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void compute() {
+            for (int k = 0; k < blockCount; k++) {
+                blocks.get(k).reinitialize();
+            }
+            invokeAll(blocks.subList(0, blockCount));
+        }
+    }
+
+    /**
+     * A block of work. A planet block handles its planets against the planets
+     * after them, the ship and the bullets. A junk block handles its junk
+     * against the planets, the ship and the bullets.
+     */
+    private final class Block extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private boolean planetBlock;
+        private int start, end;
+        private double g;
+        /*
+         * The changes in velocity made by this block. Junk only ever appears
+         * in one block so it writes straight into the junk snapshot.
+         */
+        double[] planetDvx = new double[0], planetDvy = new double[0];
+        double[] bulletDvx = new double[0], bulletDvy = new double[0];
+        final double[] shipDvx = new double[1], shipDvy = new double[1];
+
+        void set(boolean planetBlock, int start, int end, double g) {
+            this.planetBlock = planetBlock;
+            this.start = start;
+            this.end = end;
+            this.g = g;
+            if (planetDvx.length < planets.size) {
+                planetDvx = new double[planets.size];
+                planetDvy = new double[planets.size];
+            }
+            if (bulletDvx.length < bullets.size) {
+                bulletDvx = new double[bullets.size];
+                bulletDvy = new double[bullets.size];
+            }
+            Arrays.fill(planetDvx, 0);
+            Arrays.fill(planetDvy, 0);
+            Arrays.fill(bulletDvx, 0);
+            Arrays.fill(bulletDvy, 0);
+            shipDvx[0] = 0;
+            shipDvy[0] = 0;
+        }
+
+        @Override
+        protected void compute() {
+            if (planetBlock) {
+                for (int i = start; i < end; i++) {
+                    for (int j = i + 1; j < planets.size; j++) {
+                        attract(planets, i, planetDvx, planetDvy, i,
+                                planets, j, planetDvx, planetDvy, j, g);
+                    }
+                    attract(planets, i, planetDvx, planetDvy, i,
+                            ship, 0, shipDvx, shipDvy, 0, g);
+                    for (int b = 0; b < bullets.size; b++) {
+                        attract(planets, i, planetDvx, planetDvy, i,
+                                bullets, b, bulletDvx, bulletDvy, b, g);
+                    }
+                }
+            } else {
+                for (int a = start; a < end; a++) {
+                    for (int p = 0; p < planets.size; p++) {
+                        attract(planets, p, planetDvx, planetDvy, p,
+                                junk, a, junk.dvx, junk.dvy, a, g);
+                    }
+                    attract(ship, 0, shipDvx, shipDvy, 0,
+                            junk, a, junk.dvx, junk.dvy, a, g);
+                    for (int b = 0; b < bullets.size; b++) {
+                        attract(junk, a, junk.dvx, junk.dvy, a,
+                                bullets, b, bulletDvx, bulletDvy, b, g);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,278 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.util.Arrays;
+
+/**
+ * Applies gravity with the particle mesh method. The mass of every object is
+ * spread onto a grid that covers the whole world, the grid is convolved with
+ * the force law using fast Fourier transforms, and the resulting field is
+ * read back at each object. The cost is linear in the number of objects plus
+ * a fixed n log n in the number of grid cells, so it suits late levels with
+ * huge worlds and thousands of pieces of junk.
+ *
+ * The grid is periodic just like the world is in GameObject.checkBounds, so
+ * objects attract each other across the edges of the world along the
+ * shortest way around. Forces between objects closer than a couple of grid
+ * cells are smoothed out; the 2500 pixel clamp in the force law already
+ * smooths them at the default grid size on large worlds.
+ *
+ * @author Alex Rodrigues
+ */
+public class ParticleMeshGravity implements GravitySolver {
+
+    /*
+     * The number of grid cells along each side of the world.
+     */
+    private final int gridSize;
+    /*
+     * The size of the world and the grid cells the kernel was built for.
+     */
+    private int kernelWidth = -1, kernelHeight = -1;
+    private double cellWidth, cellHeight;
+    /*
+     * The Fourier transform of the force law for unit mass along x and y,
+     * without the gravitational constant.
+     */
+    private final double[] kernelXRe, kernelXIm, kernelYRe, kernelYIm;
+    /*
+     * One field for each group of objects, since not every group attracts
+     * every other group. The real part of the field is the x component and
+     * the imaginary part is the y component.
+     */
+    private final double[] planetFieldRe, planetFieldIm;
+    private final double[] junkFieldRe, junkFieldIm;
+    private final double[] bulletFieldRe, bulletFieldIm;
+    private final FFT fft;
+
+    /**
+     * Creates a particle mesh solver.
+     *
+     * @param gridSize The number of grid cells along each side of the world.
+     * This must be a power of two.
+     */
+    public ParticleMeshGravity(int gridSize) {
+        if (gridSize < 2 || Integer.bitCount(gridSize) != 1) {
+            throw new IllegalArgumentException(
+                    "grid size must be a power of two: " + gridSize);
+        }
+        this.gridSize = gridSize;
+        int cells = gridSize * gridSize;
+        kernelXRe = new double[cells];
+        kernelXIm = new double[cells];
+        kernelYRe = new double[cells];
+        kernelYIm = new double[cells];
+        planetFieldRe = new double[cells];
+        planetFieldIm = new double[cells];
+        junkFieldRe = new double[cells];
+        junkFieldIm = new double[cells];
+        bulletFieldRe = new double[cells];
+        bulletFieldIm = new double[cells];
+        fft = new FFT(gridSize);
+    }
+
+    /**
+     * Gets the number of grid cells along each side of the world.
+     *
+     * @return The grid size.
+     */
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    @Override
+    public void apply(Spacecraft ship, EntityStore<Planet> planets,
+            EntityStore<SpaceJunk> junk, EntityStore<Bullet> bullets) {
+        World world = ship.world;
+        if (kernelWidth != world.spaceWidth || kernelHeight != world.spaceHeight) {
+            buildKernel(world);
+        }
+        double g = world.gravitationalConstant();
+        solveField(planets, planetFieldRe, planetFieldIm);
+        solveField(junk, junkFieldRe, junkFieldIm);
+        solveField(bullets, bulletFieldRe, bulletFieldIm);
+
+        //the ship is a single object so it is cheaper to pull on it directly
+        EntityStore<?> ss = ship.store;
+        int si = ship.id;
+        for (int i = 0; i < planets.size(); i++) {
+            applyField(planets, i, planetFieldRe, planetFieldIm, g);
+            applyField(planets, i, junkFieldRe, junkFieldIm, g);
+            applyField(planets, i, bulletFieldRe, bulletFieldIm, g);
+            pull(planets, i, ss, si, g);
+            pull(ss, si, planets, i, g);
+        }
+        applyField(ss, si, junkFieldRe, junkFieldIm, g);
+        for (int i = 0; i < junk.size(); i++) {
+            applyField(junk, i, planetFieldRe, planetFieldIm, g);
+            applyField(junk, i, bulletFieldRe, bulletFieldIm, g);
+            pull(junk, i, ss, si, g);
+        }
+        for (int i = 0; i < bullets.size(); i++) {
+            applyField(bullets, i, planetFieldRe, planetFieldIm, g);
+            applyField(bullets, i, junkFieldRe, junkFieldIm, g);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Builds the Fourier transform of the force law sampled at the grid
+     * offsets. Offsets are taken the shortest way around the world, and the
+     * sign is flipped since the convolution measures from the source to the
+     * object being pulled.
+     */
+    private void buildKernel(World world) {
+        kernelWidth = world.spaceWidth;
+        kernelHeight = world.spaceHeight;
+        cellWidth = (double) kernelWidth / gridSize;
+        cellHeight = (double) kernelHeight / gridSize;
+
+        for (int j = 0; j < gridSize; j++) {
+            double y = (j <= gridSize / 2 ? j : j - gridSize) * cellHeight;
+            for (int i = 0; i < gridSize; i++) {
+                double x = (i <= gridSize / 2 ? i : i - gridSize) * cellWidth;
+                double r = Math.sqrt(x * x + y * y);
+                double k = 0;
+                if (r > 100) {
+                    r = Math.max(r, 2500);
+                    k = 1 / (r * (1 + r));
+                }
+                int c = j * gridSize + i;
+                kernelXRe[c] = -x * k;
+                kernelXIm[c] = 0;
+                kernelYRe[c] = -y * k;
+                kernelYIm[c] = 0;
+            }
+        }
+        fft.transform2D(kernelXRe, kernelXIm, false);
+        fft.transform2D(kernelYRe, kernelYIm, false);
+    }
+
+    /**
+     * Spreads the mass of a group of objects onto the grid and convolves it
+     * with the force law.
+     *
+     * @param list The objects.
+     * @param fieldRe Receives the x component of the field.
+     * @param fieldIm Receives the y component of the field.
+     */
+    private void solveField(EntityStore<?> list, double[] fieldRe,
+            double[] fieldIm) {
+        Arrays.fill(fieldRe, 0);
+        Arrays.fill(fieldIm, 0);
+        if (list.isEmpty()) {
+            return;
+        }
+        for (int n = 0; n < list.size(); n++) {
+            double u = list.xPosition[n] / cellWidth;
+            double v = list.yPosition[n] / cellHeight;
+            int i0 = (int) Math.floor(u);
+            int j0 = (int) Math.floor(v);
+            double fx = u - i0;
+            double fy = v - j0;
+            int i1 = wrap(i0 + 1);
+            int j1 = wrap(j0 + 1);
+            i0 = wrap(i0);
+            j0 = wrap(j0);
+            double m = list.mass[n];
+            fieldRe[j0 * gridSize + i0] += m * (1 - fx) * (1 - fy);
+            fieldRe[j0 * gridSize + i1] += m * fx * (1 - fy);
+            fieldRe[j1 * gridSize + i0] += m * (1 - fx) * fy;
+            fieldRe[j1 * gridSize + i1] += m * fx * fy;
+        }
+
+        fft.transform2D(fieldRe, fieldIm, false);
+        //both force components are real, so they can share one inverse
+        //transform as the real and imaginary parts of (Fx + i Fy)
+        for (int c = 0; c < fieldRe.length; c++) {
+            double re = fieldRe[c];
+            double im = fieldIm[c];
+            double xRe = re * kernelXRe[c] - im * kernelXIm[c];
+            double xIm = re * kernelXIm[c] + im * kernelXRe[c];
+            double yRe = re * kernelYRe[c] - im * kernelYIm[c];
+            double yIm = re * kernelYIm[c] + im * kernelYRe[c];
+            fieldRe[c] = xRe - yIm;
+            fieldIm[c] = xIm + yRe;
+        }
+        fft.transform2D(fieldRe, fieldIm, true);
+    }
+
+    /**
+     * Reads the field at the object and adds it to its velocity.
+     */
+    private void applyField(EntityStore<?> obj, int n, double[] fieldRe,
+            double[] fieldIm, double g) {
+        double u = obj.xPosition[n] / cellWidth;
+        double v = obj.yPosition[n] / cellHeight;
+        int i0 = (int) Math.floor(u);
+        int j0 = (int) Math.floor(v);
+        double fx = u - i0;
+        double fy = v - j0;
+        int i1 = wrap(i0 + 1);
+        int j1 = wrap(j0 + 1);
+        i0 = wrap(i0);
+        j0 = wrap(j0);
+        int c00 = j0 * gridSize + i0;
+        int c10 = j0 * gridSize + i1;
+        int c01 = j1 * gridSize + i0;
+        int c11 = j1 * gridSize + i1;
+        double w00 = (1 - fx) * (1 - fy);
+        double w10 = fx * (1 - fy);
+        double w01 = (1 - fx) * fy;
+        double w11 = fx * fy;
+        double ax = w00 * fieldRe[c00] + w10 * fieldRe[c10]
+                + w01 * fieldRe[c01] + w11 * fieldRe[c11];
+        double ay = w00 * fieldIm[c00] + w10 * fieldIm[c10]
+                + w01 * fieldIm[c01] + w11 * fieldIm[c11];
+        obj.xVelocity[n] += ax * g * obj.gInfluence[n];
+        obj.yVelocity[n] += ay * g * obj.gInfluence[n];
+    }
+
+    /**
+     * Pulls the target towards the source with the same arithmetic as
+     * GameObject.applyGravitationalAttraction.
+     */
+    private static void pull(EntityStore<?> target, int t,
+            EntityStore<?> source, int s, double g) {
+        double x = source.xPosition[s] - target.xPosition[t];
+        double y = source.yPosition[s] - target.yPosition[t];
+        double r = Math.sqrt(x * x + y * y);
+
+        if (r > 100) {
+            double mass = target.mass[t];
+            r = Math.max(r, 2500);
+            double gForce = g * ((source.mass[s] * mass) / (1 + r));
+            x /= r;
+            y /= r;
+            target.xVelocity[t] += x * gForce / mass * target.gInfluence[t];
+            target.yVelocity[t] += y * gForce / mass * target.gInfluence[t];
+        }
+    }
+
+    private int wrap(int i) {
+        //the grid size is a power of two
+        return i & (gridSize - 1);
+    }
+}
@@ -33,59 +33,62 @@ public class Planet extends GameObject {
      * The diameter of the planet.
      */
     public int diameter;
+    /**
+     * Every planet is smaller than this.
+     */
+    public static final int MAX_DIAMETER = 1650;
 
-    public Planet() {
+    public Planet(World world) {
+        super(world);
 
-        this.diameter = 50 + (int) (400 * (Math.pow(5, Math.random()) - 1));
+        this.diameter = 50 + (int) (400 * (Math.pow(5, nextRandom()) - 1));
         this.diameter *= levelScale();
         init();
     }
 
     public void init() {
         //randomize color
-        this.color = new Color(85 + (int) (Math.random() * 150),
-                (int) Math.random() * 150,
-                (int) (Math.random() * 150),
-                150 + (int) (Math.random() * 100));
+        this.color = new Color(85 + (int) (nextRandom() * 150),
+                (int) nextRandom() * 150,
+                (int) (nextRandom() * 150),
+                150 + (int) (nextRandom() * 100));
 
         //mass is a function of diameter with some noise
-        this.mass = 2000 * diameter * (Math.pow(1.02, diameter
-                / (3.50 + Math.random())) + 10000);
+        setMass(2000 * diameter * (Math.pow(1.02, diameter
+                / (3.50 + nextRandom())) + 10000));
 
         //hp is a function of mass with some noise
-        this.hp = this.mass / Math.pow(10, 8);
-        this.hp *= (0.85 + Math.random());
-        this.hp = Math.max(hp, 2000);
+        double hp = getMass() / Math.pow(10, 8);
+        hp *= (0.85 + nextRandom());
+        setHp(Math.max(hp, 2000));
 
-        this.gInfluence = 0.5 + 0.5 * Math.random();
-        this.gInfluence *= levelScale();
+        double gInfluence = 0.5 + 0.5 * nextRandom();
+        setGInfluence(gInfluence * levelScale());
         this.fillShape = true;
         this.minimapSize = 2 + diameter / 200;
         createShape();
 
         //randomize intitial velcoity
-        double h = (Math.random() + 0.5) * 4 / diameter;
-        double a = Math.random() * 2 * Math.PI;
-        xVelocity = Math.cos(a) * h;
-        yVelocity = Math.sin(a) * h;
+        double h = (nextRandom() + 0.5) * 4 / diameter;
+        double a = nextRandom() * 2 * Math.PI;
+        setVelocity(Math.cos(a) * h, Math.sin(a) * h);
 
         //randomize initial position with a mininum and maximum distance
         //from the center of the world
-        h = Math.random() * ((Game.SPACE_WIDTH / 3 + Game.SPACE_HEIGHT / 3) / 2)
-                + Game.SPACE_WIDTH * 0.1;
-        a = Math.random() * 2 * Math.PI;
-        xPosition = Math.cos(a) * h + Game.SPACE_WIDTH / 2;
-        yPosition = Math.sin(a) * h + Game.SPACE_HEIGHT / 2;
+        h = nextRandom() * ((world.spaceWidth / 3 + world.spaceHeight / 3) / 2)
+                + world.spaceWidth * 0.1;
+        a = nextRandom() * 2 * Math.PI;
+        setPosition(Math.cos(a) * h + world.spaceWidth / 2,
+                Math.sin(a) * h + world.spaceHeight / 2);
 
         
-        rotationStep = (Math.random() / 2 - 0.25) / diameter;
+        setRotationStep((nextRandom() / 2 - 0.25) / diameter);
 
         //create a constant bias in the velocity of the planet
-        this.prefSpeed = Math.random() * 20 + 8;
-        this.prefSpeed *= levelScale()*1.20;
-        a = Math.random() * 2 * Math.PI;
-        this.prefXdir = Math.cos(a);
-        this.prefYdir = Math.sin(a);
+        double prefSpeed = nextRandom() * 20 + 8;
+        prefSpeed *= levelScale()*1.20;
+        a = nextRandom() * 2 * Math.PI;
+        setPreferredVelocity(Math.cos(a), Math.sin(a), prefSpeed);
         
         //finally set this planet to be active
         this.setActive();
@@ -96,21 +99,18 @@ public class Planet extends GameObject {
      * @return The level scale factor.
      */
     private double levelScale(){
-         return Math.min(1, 0.2 * Game.level);
+         return Math.min(1, 0.2 * world.level);
     }
     /**
      * Paint the game object to the world.
      *
      * @param g The graphics for the world.
      */
-    public void paint(Graphics g, int xOffset, int yOffset) {
-
-        if (!this.isActive()) {
-            return;
-        }
+    public void paint(Graphics g, double xPosition, double yPosition,
+            double angle, int xOffset, int yOffset) {
         g.setColor(color);
-        int x = (int) (this.xPosition - diameter / 2) - xOffset;
-        int y = (int) (this.yPosition - diameter / 2) - yOffset;
+        int x = (int) (xPosition - diameter / 2) - xOffset;
+        int y = (int) (yPosition - diameter / 2) - yOffset;
         if (fillShape) {
             g.fillOval(x, y, diameter, diameter);
         } else {
@@ -118,45 +118,69 @@ public class Planet extends GameObject {
         }
     }
 
+    @Override
+    public double getBoundingRadius() {
+        return diameter / 2.0 + 1;
+    }
+
     @Override
     public boolean isColliding(GameObject object2) {
 
         if (!this.isActive() || !object2.isActive()) {
             return false;
         }
-        int x1 = (int) (this.xPosition);
-        int y1 = (int) (this.yPosition);
-
-
-        int x2, y2;
-        for (int i = 0; i < object2.drawShape.npoints; i++) {
-            x2 = object2.drawShape.xpoints[i];
-            y2 = object2.drawShape.ypoints[i];
-
-            double xDiff = Math.abs(x2 - x1);
-            double yDiff = Math.abs(y2 - y1);
-            double m = Math.max(xDiff, yDiff);
-
-            double d = m * Math.sqrt(Math.pow(xDiff / m, 2)
-                    + Math.pow(yDiff / m, 2));
-            if (d < 0.98 * diameter / 2) {
-                return true;
-            }
+        int x1 = (int) (getXPosition());
+        int y1 = (int) (getYPosition());
+        double radius = 0.98 * diameter / 2;
+
+        double x = object2.getBoundsX() - x1;
+        double y = object2.getBoundsY() - y1;
+        double r = radius + object2.getBoundingRadius();
+        if (x * x + y * y > r * r) {
+            return false;
         }
-        return false;
+
+        return Narrowphase.circleOverlapsPolygon(x1, y1, radius,
+                object2.drawShape);
     }
 
     /**
      * Update the position of the game object.
      */
     public void update() {
-        counter++;
-        this.xVelocity *= 0.998;
-        this.yVelocity *= 0.998;
-        xPosition += xVelocity + prefXdir * prefSpeed;
-        yPosition += yVelocity + prefYdir * prefSpeed;
+        EntityStore<?> s = store;
+        s.counter[id]++;
+        s.xVelocity[id] *= 0.998;
+        s.yVelocity[id] *= 0.998;
+        s.xPosition[id] += s.xVelocity[id] + s.prefXdir[id] * s.prefSpeed[id];
+        s.yPosition[id] += s.yVelocity[id] + s.prefYdir[id] * s.prefSpeed[id];
 
         checkBounds();
 
     }
+
+    /**
+     * Updates all the planets in a list in one pass over the arrays of the
+     * store. This does the same as calling update on each planet.
+     *
+     * @param world The world the planets are in.
+     * @param planets The list of planets.
+     */
+    public static void updateAll(World world, EntityStore<Planet> planets) {
+        int n = planets.size();
+        int width = world.spaceWidth, height = world.spaceHeight;
+        double[] xPosition = planets.xPosition, yPosition = planets.yPosition;
+        double[] xVelocity = planets.xVelocity, yVelocity = planets.yVelocity;
+        double[] prefXdir = planets.prefXdir, prefYdir = planets.prefYdir;
+        double[] prefSpeed = planets.prefSpeed;
+        int[] counter = planets.counter;
+        for (int i = 0; i < n; i++) {
+            counter[i]++;
+            xVelocity[i] *= 0.998;
+            yVelocity[i] *= 0.998;
+            xPosition[i] += xVelocity[i] + prefXdir[i] * prefSpeed[i];
+            yPosition[i] += yVelocity[i] + prefYdir[i] * prefSpeed[i];
+            wrap(xPosition, yPosition, i, width, height);
+        }
+    }
 }
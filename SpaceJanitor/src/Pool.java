@@ -0,0 +1,112 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+/**
+ * A bounded stack of objects that are no longer in use, so short lived
+ * objects can be reused instead of allocated. When the pool is empty the
+ * caller allocates a new object and when it is full released objects are
+ * left to the garbage collector, so the pool never holds more than its
+ * capacity. The counters show how well the pool is sized.
+ *
+ * Pools are not thread safe, they belong to the simulation thread.
+ *
+ * @author Alex Rodrigues
+ */
+public class Pool<T> {
+
+    private final Object[] free;
+    private int size;
+    /*
+     * Objects handed out from the pool, times the pool was empty and
+     * released objects the pool had no room for.
+     */
+    private long hits, misses, discards;
+
+    /**
+     * Creates an empty pool.
+     *
+     * @param capacity The most objects the pool holds.
+     */
+    public Pool(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        free = new Object[capacity];
+    }
+
+    /**
+     * Takes an object from the pool.
+     *
+     * @return The object, or null if the pool is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public T obtain() {
+        if (size == 0) {
+            misses++;
+            return null;
+        }
+        hits++;
+        T obj = (T) free[--size];
+        free[size] = null;
+        return obj;
+    }
+
+    /**
+     * Puts an object that is no longer used back in the pool.
+     *
+     * @param obj The object.
+     */
+    public void release(T obj) {
+        if (size == free.length) {
+            discards++;
+            return;
+        }
+        free[size++] = obj;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getDiscards() {
+        return discards;
+    }
+
+    /**
+     * Gets the number of objects waiting in the pool.
+     *
+     * @return The number of objects.
+     */
+    public int getFreeCount() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return hits + " hits, " + misses + " misses, " + discards + " discards, "
+                + size + " free";
+    }
+}
@@ -0,0 +1,193 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+/**
+ * The random numbers of a world. This is the SplitMix64 generator, the same
+ * one as java.util.SplittableRandom, which is not in Java 7.
+ *
+ * A source is not thread safe and takes no locks; java.util.Random updates
+ * its seed with a compare and swap on every call, which threads sharing one
+ * would fight over. Each thread should have a source of its own, made with
+ * split. A split source is as good as a fresh one and never overlaps the
+ * one it came from, and splitting is deterministic, so as long as the
+ * sources are split off in the same order every run and handed to pieces of
+ * work rather than to threads, the results are the same however many
+ * threads do the work.
+ *
+ * @author Alex Rodrigues
+ */
+public class RandomSource {
+
+    /*
+     * The gamma of an unsplit source, the odd number closest to 2^64 divided
+     * by the golden ratio.
+     */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    /*
+     * The spacing of the doubles nextDouble returns.
+     */
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+    private long seed;
+    /*
+     * The odd amount the seed goes up by each call. Sources split from each
+     * other have different gammas.
+     */
+    private final long gamma;
+
+    /**
+     * Creates a source.
+     *
+     * @param seed The seed. Two sources with the same seed give the same
+     * numbers.
+     */
+    public RandomSource(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    private RandomSource(long seed, long gamma) {
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    /**
+     * Makes a new source from this one, for another thread or another piece
+     * of work. This uses up two numbers of this source.
+     *
+     * @return The new source.
+     */
+    public RandomSource split() {
+        return new RandomSource(nextLong(), mixGamma(nextSeed()));
+    }
+
+    /**
+     * Splits a new source off this one into a slot of a pair of arrays, the
+     * same as split. EntityStore keeps the random numbers of each game
+     * object this way, so the objects need no source of their own.
+     *
+     * @param seed The seeds.
+     * @param gamma The gammas.
+     * @param i The slot.
+     */
+    public void split(long[] seed, long[] gamma, int i) {
+        seed[i] = nextLong();
+        gamma[i] = mixGamma(nextSeed());
+    }
+
+    /**
+     * Gets a random double from a source kept in a slot of a pair of
+     * arrays, see split.
+     *
+     * @param seed The seeds.
+     * @param gamma The gammas.
+     * @param i The slot.
+     * @return The number.
+     */
+    public static double nextDouble(long[] seed, long[] gamma, int i) {
+        return (mix64(seed[i] += gamma[i]) >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * Skips over numbers of a source kept in a slot of a pair of arrays,
+     * see skip.
+     *
+     * @param seed The seeds.
+     * @param gamma The gammas.
+     * @param i The slot.
+     * @param n The number of numbers to skip.
+     */
+    public static void skip(long[] seed, long[] gamma, int i, long n) {
+        seed[i] += n * gamma[i];
+    }
+
+    /**
+     * Gets a random long, all values equally likely.
+     *
+     * @return The number.
+     */
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+    /**
+     * Gets a random int from 0 up to but not including a bound, all values
+     * equally likely.
+     *
+     * @param bound The bound, which must be positive.
+     * @return The number.
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive: " + bound);
+        }
+        //reject the top of the range so every value is equally likely
+        int limit = Integer.MAX_VALUE - Integer.MAX_VALUE % bound;
+        int r;
+        do {
+            r = (int) (nextLong() >>> 33);
+        } while (r >= limit);
+        return r % bound;
+    }
+
+    /**
+     * Gets a random double from 0 up to but not including 1, like
+     * Math.random.
+     *
+     * @return The number.
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * Skips over numbers, leaving the source where it would be after that
+     * many calls to nextLong or nextDouble.
+     *
+     * @param n The number of numbers to skip.
+     */
+    public void skip(long n) {
+        seed += n * gamma;
+    }
+
+    private long nextSeed() {
+        return seed += gamma;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /*
+     * Turns a number into a gamma: odd, and with enough bits changing from
+     * one to the next that the seeds do not follow an obvious pattern.
+     */
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        if (Long.bitCount(z ^ (z >>> 1)) < 24) {
+            z ^= 0xaaaaaaaaaaaaaaaaL;
+        }
+        return z;
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+/**
+ * Everything the renderer needs to draw one tick of the world: the objects,
+ * where they were at the end of the tick before and at the end of this one,
+ * and the numbers shown on the screen. The simulation fills a snapshot in and
+ * hands it to the renderer through a SnapshotBuffer, and the renderer only
+ * reads it, so drawing never looks at the lists the simulation is changing.
+ *
+ * Drawing between the two positions of each object keeps the motion smooth
+ * when frames do not line up with ticks.
+ *
+ * @author Alex Rodrigues
+ */
+public class RenderSnapshot {
+
+    /*
+     * The kinds of objects, in the order they are drawn.
+     */
+    public static final int SHIP = 0;
+    public static final int JUNK = 1;
+    public static final int PLANET = 2;
+    public static final int BULLET = 3;
+    static final int KINDS = 4;
+    /*
+     * The tick this is a snapshot of, counting from 1, and the value of
+     * System.nanoTime when it was published.
+     */
+    long tick;
+    long time;
+    /*
+     * The numbers shown on the screen.
+     */
+    int level, lives, score, massToNextLevel;
+    int spaceWidth, spaceHeight;
+    /*
+     * The objects of each kind are kept together, the ones of kind k are at
+     * kindStart[k] up to kindStart[k + 1].
+     */
+    final int[] kindStart = new int[KINDS + 1];
+    /*
+     * The objects, whether they were active, and their positions and angles
+     * at the end of the tick before (0) and of this tick (1). The shape and
+     * color of an object never change so the object itself is kept for those.
+     */
+    GameObject[] objects = new GameObject[0];
+    boolean[] active = new boolean[0];
+    double[] x0 = new double[0], y0 = new double[0], angle0 = new double[0];
+    double[] x1 = new double[0], y1 = new double[0], angle1 = new double[0];
+    /*
+     * Where the objects other than the ship are at the end of this tick, by
+     * their index in the snapshot.
+     */
+    final SpatialGrid grid = new SpatialGrid(World.GRID_CELL_SIZE);
+    /*
+     * The sleeping junk, which is only shown on the minimap: where each
+     * piece is and its minimap size. The stamp says which copy of it this
+     * is, see SnapshotBuffer.
+     */
+    int dormantCount;
+    double[] dormantX = new double[0], dormantY = new double[0];
+    int[] dormantSize = new int[0];
+    long dormantStamp;
+    /*
+     * The pieces of debris, which are not game objects, with their positions
+     * at the end of the tick before (0) and of this tick (1).
+     */
+    int debrisCount;
+    double[] debrisX0 = new double[0], debrisY0 = new double[0];
+    double[] debrisX1 = new double[0], debrisY1 = new double[0];
+
+    /**
+     * Gets the number of objects.
+     *
+     * @return The number of objects.
+     */
+    public int size() {
+        return kindStart[KINDS];
+    }
+
+    /**
+     * Gets the tick this is a snapshot of.
+     *
+     * @return The tick, counting from 1.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Return the x position of an object part of the way through the tick.
+     *
+     * @param i The index of the object.
+     * @param alpha How far through the tick, from 0 to 1.
+     */
+    public double getXPosition(int i, double alpha) {
+        return lerp(x0[i], x1[i], alpha, spaceWidth);
+    }
+
+    /**
+     * Return the y position of an object part of the way through the tick.
+     *
+     * @param i The index of the object.
+     * @param alpha How far through the tick, from 0 to 1.
+     */
+    public double getYPosition(int i, double alpha) {
+        return lerp(y0[i], y1[i], alpha, spaceHeight);
+    }
+
+    /**
+     * Return the angle of an object part of the way through the tick.
+     *
+     * @param i The index of the object.
+     * @param alpha How far through the tick, from 0 to 1.
+     */
+    public double getAngle(int i, double alpha) {
+        return angle0[i] + (angle1[i] - angle0[i]) * alpha;
+    }
+
+    /**
+     * Return the x position of a piece of debris part of the way through the
+     * tick.
+     *
+     * @param i The index of the piece.
+     * @param alpha How far through the tick, from 0 to 1.
+     */
+    public double getDebrisXPosition(int i, double alpha) {
+        return lerp(debrisX0[i], debrisX1[i], alpha, spaceWidth);
+    }
+
+    /**
+     * Return the y position of a piece of debris part of the way through the
+     * tick.
+     *
+     * @param i The index of the piece.
+     * @param alpha How far through the tick, from 0 to 1.
+     */
+    public double getDebrisYPosition(int i, double alpha) {
+        return lerp(debrisY0[i], debrisY1[i], alpha, spaceHeight);
+    }
+
+    private static double lerp(double a, double b, double alpha, double size) {
+        if (Math.abs(b - a) > size / 2) {
+            //the object wrapped around the edge of space, do not sweep it
+            //across the whole world
+            return b;
+        }
+        return a + (b - a) * alpha;
+    }
+
+    /**
+     * Makes room for a number of objects, keeping none of the old ones.
+     *
+     * @param n The number of objects.
+     */
+    void ensureCapacity(int n) {
+        if (objects.length >= n) {
+            return;
+        }
+        n = Math.max(n, objects.length * 2);
+        objects = new GameObject[n];
+        active = new boolean[n];
+        x0 = new double[n];
+        y0 = new double[n];
+        angle0 = new double[n];
+        x1 = new double[n];
+        y1 = new double[n];
+        angle1 = new double[n];
+    }
+
+    /**
+     * Makes room for a number of pieces of sleeping junk, keeping none of
+     * the old ones.
+     *
+     * @param n The number of pieces.
+     */
+    void ensureDormantCapacity(int n) {
+        if (dormantX.length >= n) {
+            return;
+        }
+        n = Math.max(n, dormantX.length * 2);
+        dormantX = new double[n];
+        dormantY = new double[n];
+        dormantSize = new int[n];
+    }
+
+    /**
+     * Makes room for a number of pieces of debris, keeping none of the old
+     * ones.
+     *
+     * @param n The number of pieces.
+     */
+    void ensureDebrisCapacity(int n) {
+        if (debrisX0.length >= n) {
+            return;
+        }
+        n = Math.max(n, debrisX0.length * 2);
+        debrisX0 = new double[n];
+        debrisY0 = new double[n];
+        debrisX1 = new double[n];
+        debrisY1 = new double[n];
+    }
+}
@@ -0,0 +1,226 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.awt.Color;
+import java.awt.Graphics;
+
+/**
+ * Draws snapshots of a world: the background stars, the objects around the
+ * ship, the status text and the minimap. It only needs a Graphics to draw
+ * into, so the world can be rendered into an image without a window.
+ *
+ * @author Alex Rodrigues
+ */
+public class Renderer {
+
+    /*
+     * The games resolution width.
+     */
+    public static final int RESOLUTION_WIDTH = 1280;
+    /*
+     * The games resolution height.
+     */
+    public static final int RESOLUTION_HEIGHT = 720;
+    /**
+     * These are offsets that allow the camera to move around the world in
+     * relation to the ship.
+     */
+    private int cameraOffsetX, cameraOffsetY;
+    /**
+     * The size of the mini map in pixels.
+     */
+    private final int MINIMAP_SIZE = 150;
+    /*
+     * The x location of the minimap on the screen.
+     */
+    private final int MINIMAP_X = RESOLUTION_WIDTH - MINIMAP_SIZE - 3;
+    /*
+     * The y location of the minimap on the screen.
+     */
+    private final int MINIMAP_Y = RESOLUTION_HEIGHT - MINIMAP_SIZE - 3;
+    /*
+     * How much further than the drawing range the spatial grid is searched,
+     * to allow for objects moving during a tick.
+     */
+    private static final int CULL_MARGIN = 256;
+    /**
+     * The most memory the images of the planets may take up, in bytes.
+     */
+    public static final long PLANET_SPRITE_BUDGET = 64L << 20;
+    /*
+     * The images the junk and the planets are drawn from.
+     */
+    final SpriteCache sprites = new SpriteCache(PLANET_SPRITE_BUDGET);
+    /**
+     * The number of ticks between redraws of the minimap, five times a
+     * second.
+     */
+    public static final int MINIMAP_INTERVAL = 10;
+    /*
+     * The minimap, redrawn every MINIMAP_INTERVAL ticks.
+     */
+    final Minimap minimap = new Minimap(MINIMAP_SIZE, MINIMAP_INTERVAL);
+    /**
+     * The background stars. The far layer scrolls at half the speed of the
+     * world behind the near one.
+     */
+    private final StarField stars = new StarField(0x5eed, new int[]{120, 160},
+            new double[]{0.5, 1});
+    /*
+     * Where the ship is drawn in the frame being rendered.
+     */
+    private double shipX, shipY;
+
+    /**
+     * Renders the game.
+     *
+     * @param offg The graphics to draw into.
+     * @param s The snapshot to draw.
+     * @param alpha How far through the tick of the snapshot to draw the
+     * objects, from 0 to 1.
+     */
+    public void render(Graphics offg, RenderSnapshot s, double alpha) {
+
+        shipX = s.getXPosition(RenderSnapshot.SHIP, alpha);
+        shipY = s.getYPosition(RenderSnapshot.SHIP, alpha);
+        this.cameraOffsetX = (int) (shipX - RESOLUTION_WIDTH / 2);
+        this.cameraOffsetY = (int) (shipY - RESOLUTION_HEIGHT / 2);
+        offg.setColor(Color.BLACK);
+        offg.fillRect(0, 0, RESOLUTION_WIDTH, RESOLUTION_HEIGHT);
+        this.drawBackgroundStars(offg);
+        paintLists(offg, s, alpha);
+        offg.setFont(offg.getFont().deriveFont(14f));
+        offg.setColor(Color.green);
+        offg.drawString("Lives: " + s.lives, 5, 15);
+        offg.drawString("Score: " + s.score, 5, 30);
+        offg.drawString("MASS LEFT: " + s.massToNextLevel, 5, 45);
+        offg.drawString("Level " + s.level, 5, 60);
+        if (s.lives <= 0) {
+            offg.setFont(offg.getFont().deriveFont(40f));
+            offg.drawString("Game Over", RESOLUTION_WIDTH / 2 - 45, RESOLUTION_HEIGHT / 2);
+        }
+        drawMinimap(offg, s);
+    }
+
+    /**
+     * Draw the frame rate and frame times under the status text.
+     *
+     * @param g The screens graphics.
+     * @param timer The frame times.
+     */
+    public void drawFrameTimes(Graphics g, FrameTimer timer) {
+        g.setFont(g.getFont().deriveFont(12f));
+        g.setColor(Color.gray);
+        g.drawString(timer.toString(), 5, 75);
+    }
+
+    /**
+     * Draw the minimap to the screen.
+     *
+     * @param g The screens graphics.
+     * @param s The snapshot to draw.
+     */
+    public void drawMinimap(Graphics g, RenderSnapshot s) {
+        minimap.draw(g, s, MINIMAP_X, MINIMAP_Y);
+    }
+
+    /**
+     * Paint all collection of objects in the world.
+     *
+     * @param offg The graphics to draw into.
+     * @param s The snapshot to draw.
+     * @param alpha How far through the tick of the snapshot to draw the
+     * objects, from 0 to 1.
+     */
+    public void paintLists(Graphics offg, RenderSnapshot s, double alpha) {
+        int ship = RenderSnapshot.SHIP;
+        if (s.active[ship]) {
+            s.objects[ship].paint(offg, s.getXPosition(ship, alpha),
+                    s.getYPosition(ship, alpha), s.getAngle(ship, alpha),
+                    cameraOffsetX, cameraOffsetY);
+        }
+
+        //only what can reach the screen is drawn; the grid has where the
+        //objects end the tick, which can be a little way from where they are
+        //drawn, and no object reaches further from its center than a planet
+        double left = cameraOffsetX, top = cameraOffsetY;
+        double right = left + RESOLUTION_WIDTH, bottom = top + RESOLUTION_HEIGHT;
+        double reach = Planet.MAX_DIAMETER / 2 + CULL_MARGIN;
+        int found = s.grid.queryRect(left - reach, top - reach,
+                right + reach, bottom + reach);
+        //draw in snapshot order, which is the order of the kinds
+        s.grid.sortResults();
+        int planets = s.kindStart[RenderSnapshot.PLANET];
+        int bullets = s.kindStart[RenderSnapshot.BULLET];
+        for (int k = 0; k < found; k++) {
+            int i = s.grid.getResult(k);
+            if (!s.active[i]) {
+                continue;
+            }
+            //how far the object is drawn from its center, plus a pixel for
+            //rounding; the radius of the junk only depends on its shape, and
+            //bullets are drawn as a dot
+            double r = 1 + (i < planets ? s.objects[i].getBoundingRadius()
+                    : i < bullets ? ((Planet) s.objects[i]).diameter / 2.0 : 0);
+            double x = s.getXPosition(i, alpha);
+            double y = s.getYPosition(i, alpha);
+            if (x + r < left || x - r > right || y + r < top || y - r > bottom) {
+                continue;
+            }
+            if (i < planets) {
+                sprites.drawRotated(offg, s.objects[i], x, y,
+                        s.getAngle(i, alpha), cameraOffsetX, cameraOffsetY);
+            } else if (i < bullets) {
+                sprites.drawPlanet(offg, (Planet) s.objects[i], x, y,
+                        cameraOffsetX, cameraOffsetY);
+            } else {
+                s.objects[i].paint(offg, x, y, s.getAngle(i, alpha),
+                        cameraOffsetX, cameraOffsetY);
+            }
+        }
+        DebrisParticles.paint(offg, s, alpha, cameraOffsetX, cameraOffsetY);
+    }
+
+    /**
+     * Draw the background stars to the game.
+     *
+     * @param g The screens graphics.
+     */
+    public void drawBackgroundStars(Graphics g) {
+        stars.draw(g, cameraOffsetX, cameraOffsetY, RESOLUTION_WIDTH,
+                RESOLUTION_HEIGHT);
+    }
+
+    /**
+     * Return the square of the distance from a point to the players ship,
+     * which is enough to compare against a range without a square root.
+     *
+     * @param x The x coordinate of the point.
+     * @param y The y coordinate of the point.
+     * @return The squared distance from point to ship.
+     */
+    public double distanceSquaredToShip(double x, double y) {
+        double a = shipX - x;
+        double b = shipY - y;
+        return a * a + b * b;
+    }
+}
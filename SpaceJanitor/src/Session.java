@@ -0,0 +1,245 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A recording of a game: the seed of the world, the level and gravity solver
+ * it started with and the keys that were held down on every tick. A world
+ * created from the session and given the same keys plays out exactly the
+ * same, so a session can be replayed without a display, see SessionReplay.
+ *
+ * Sessions are saved as text. After the header every line is a number of
+ * ticks and the keys held down for those ticks:
+ *
+ * <pre>
+ * # Space Janitor session
+ * seed 1234
+ * level 2
+ * gravity barnes-hut
+ * keys
+ * 120 0
+ * 35 9
+ * </pre>
+ *
+ * @author Alex Rodrigues
+ */
+public class Session {
+
+    /*
+     * The bits of a key mask.
+     */
+    public static final int UP = 1;
+    public static final int LEFT = 2;
+    public static final int RIGHT = 4;
+    public static final int FIRE = 8;
+    private static final String HEADER = "# Space Janitor session";
+    private final long seed;
+    private final int level;
+    private final String gravity;
+    /*
+     * The keys held down on each tick.
+     */
+    private int[] keys = new int[1024];
+    private int ticks;
+
+    /**
+     * Creates an empty session.
+     *
+     * @param seed The seed of the world.
+     * @param level The level the world starts on.
+     * @param gravity The name of the gravity solver, as given to
+     * World.createGravitySolver, or null for the default.
+     */
+    public Session(long seed, int level, String gravity) {
+        this.seed = seed;
+        this.level = level;
+        this.gravity = gravity == null ? "default" : gravity;
+    }
+
+    /**
+     * Creates a world in the state the session started in.
+     *
+     * @return The world.
+     */
+    public World createWorld() {
+        return new World(World.createGravitySolver(gravity), level, seed);
+    }
+
+    /**
+     * Records the keys held down for the next tick.
+     *
+     * @param mask The keys, see World.getKeys.
+     */
+    public void record(int mask) {
+        if (ticks == keys.length) {
+            keys = Arrays.copyOf(keys, ticks * 2);
+        }
+        keys[ticks++] = mask;
+    }
+
+    /**
+     * Gets the keys held down on a tick.
+     *
+     * @param tick The tick.
+     * @return The keys.
+     */
+    public int getKeys(int tick) {
+        return keys[tick];
+    }
+
+    /**
+     * Gets the number of ticks recorded.
+     *
+     * @return The number of ticks.
+     */
+    public int getTickCount() {
+        return ticks;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public String getGravity() {
+        return gravity;
+    }
+
+    /**
+     * Saves the session.
+     *
+     * @param file The file to write.
+     * @throws IOException If the file can not be written.
+     */
+    public void save(File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            out.println(HEADER);
+            out.println("seed " + seed);
+            out.println("level " + level);
+            out.println("gravity " + gravity);
+            out.println("keys");
+            int i = 0;
+            while (i < ticks) {
+                int run = 1;
+                while (i + run < ticks && keys[i + run] == keys[i]) {
+                    run++;
+                }
+                out.println(run + " " + keys[i]);
+                i += run;
+            }
+            if (out.checkError()) {
+                throw new IOException("could not write " + file);
+            }
+        }
+    }
+
+    /**
+     * Loads a saved session.
+     *
+     * @param file The file to read.
+     * @return The session.
+     * @throws IOException If the file can not be read or is not a session.
+     */
+    public static Session load(File file) throws IOException {
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            if (!HEADER.equals(in.readLine())) {
+                throw new IOException(file + " is not a session");
+            }
+            long seed = Long.parseLong(value(in, "seed"));
+            int level = Integer.parseInt(value(in, "level"));
+            String gravity = value(in, "gravity");
+            if (!"keys".equals(in.readLine())) {
+                throw new IOException(file + " has no keys");
+            }
+            Session session = new Session(seed, level, gravity);
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] parts = line.split(" ");
+                int run = Integer.parseInt(parts[0]);
+                int mask = Integer.parseInt(parts[1]);
+                for (int i = 0; i < run; i++) {
+                    session.record(mask);
+                }
+            }
+            return session;
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException(file + " is not a valid session", e);
+        }
+    }
+
+    private static String value(BufferedReader in, String key) throws IOException {
+        String line = in.readLine();
+        if (line == null || !line.startsWith(key + " ")) {
+            throw new IOException("expected " + key);
+        }
+        return line.substring(key.length() + 1);
+    }
+
+    /**
+     * Makes up a session that plays like a person would: turning, thrusting
+     * and firing in bursts of varying length. This is for when there is no
+     * recorded session at hand.
+     *
+     * @param seed The seed of the world and of the made up key presses.
+     * @param level The level the world starts on.
+     * @param ticks The length of the session.
+     * @return The session.
+     */
+    public static Session generate(long seed, int level, int ticks) {
+        Session session = new Session(seed, level, null);
+        Random random = new Random(seed);
+        while (session.getTickCount() < ticks) {
+            int mask = 0;
+            if (random.nextDouble() < 0.6) {
+                mask |= UP;
+            }
+            double turn = random.nextDouble();
+            if (turn < 0.25) {
+                mask |= LEFT;
+            } else if (turn < 0.5) {
+                mask |= RIGHT;
+            }
+            if (random.nextDouble() < 0.5) {
+                mask |= FIRE;
+            }
+            int run = 5 + random.nextInt(60);
+            for (int i = 0; i < run && session.getTickCount() < ticks; i++) {
+                session.record(mask);
+            }
+        }
+        return session;
+    }
+}
@@ -0,0 +1,299 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Replays a recorded session as fast as it can without a display and reports
+ * the time spent in each phase of a tick, for every window of ticks. Unlike
+ * HotPathBenchmark this shows how the phases feed each other over a real
+ * game: junk that splits gives gravity more work, hits make debris that
+ * updateLists has to move, and so on.
+ *
+ * java SessionReplay (-session file | -generate seed,level,ticks)
+ * [-window ticks] [-warmup replays] [-out file.csv] [-save file]
+ * [-baseline file.csv] [-tolerance percent]
+ *
+ * The CSV has one row per window with the number of objects at the end of
+ * the window and the mean time per tick of each phase in microseconds. With
+ * -baseline the run is compared against an earlier CSV of the same session
+ * and every phase that got slower by more than the tolerance is reported as
+ * a regression; the exit code is 1 if there were any.
+ *
+ * @author Alex Rodrigues
+ */
+public class SessionReplay {
+
+    /*
+     * Phases that take less than this many microseconds per tick are too
+     * small to time reliably, so they are never reported as regressions.
+     */
+    private static final double NOISE_FLOOR_US = 1;
+    private final Session session;
+    private final int window;
+
+    /**
+     * Creates a replay.
+     *
+     * @param session The session.
+     * @param window The number of ticks in each row of the report.
+     */
+    public SessionReplay(Session session, int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("window must be positive: " + window);
+        }
+        this.session = session;
+        this.window = window;
+    }
+
+    /**
+     * Gets the header of the CSV.
+     *
+     * @return The header.
+     */
+    public static String header() {
+        StringBuilder header = new StringBuilder(
+                "window,first_tick,ticks,junk,planets,bullets,debris");
+        for (String phase : World.PHASES) {
+            header.append(',').append(phase).append("_us");
+        }
+        return header.append(",total_us").toString();
+    }
+
+    /**
+     * Plays the whole session once.
+     *
+     * @return The rows of the CSV, one per window.
+     */
+    public List<String> replay() {
+        World world = session.createWorld();
+        long[] times = new long[World.PHASES.length];
+        world.setPhaseTimes(times);
+        List<String> rows = new ArrayList<>();
+        int ticks = session.getTickCount();
+        for (int first = 0; first < ticks; first += window) {
+            Arrays.fill(times, 0);
+            int n = Math.min(window, ticks - first);
+            for (int t = first; t < first + n; t++) {
+                world.setKeys(session.getKeys(t));
+                world.step();
+            }
+            StringBuilder row = new StringBuilder();
+            row.append(rows.size()).append(',').append(first).append(',')
+                    .append(n).append(',').append(world.getJunkCount())
+                    .append(',').append(world.planets.size()).append(',')
+                    .append(world.bullets.size()).append(',')
+                    .append(world.debris.size());
+            long total = 0;
+            for (long time : times) {
+                row.append(String.format(Locale.ROOT, ",%.3f", time / 1e3 / n));
+                total += time;
+            }
+            row.append(String.format(Locale.ROOT, ",%.3f", total / 1e3 / n));
+            rows.add(row.toString());
+        }
+        world.close();
+        return rows;
+    }
+
+    /**
+     * Compares a replay against a baseline and prints the change in each
+     * phase.
+     *
+     * @param header The header of the current CSV.
+     * @param current The rows of the current run.
+     * @param baseline The lines of the baseline CSV, header first.
+     * @param tolerance How much slower, in percent, a phase may get before it
+     * is a regression.
+     * @param out Where to print the comparison.
+     * @return The number of phases that regressed.
+     */
+    static int compare(String header, List<String> current,
+            List<String> baseline, double tolerance, PrintStream out) {
+        String[] columns = header.split(",");
+        List<String> baseColumns = Arrays.asList(baseline.get(0).split(","));
+        List<String> baseRows = baseline.subList(1, baseline.size());
+        if (baseRows.size() != current.size()) {
+            out.println("warning: the baseline has " + baseRows.size()
+                    + " windows but this run has " + current.size());
+        }
+        int windows = Math.min(baseRows.size(), current.size());
+        //the object counts must match or the runs did not play the same game
+        for (int w = 0; w < windows; w++) {
+            String[] a = current.get(w).split(",");
+            String[] b = baseRows.get(w).split(",");
+            for (int c = 0; c < columns.length && columns[c].indexOf('_') < 0; c++) {
+                int bc = baseColumns.indexOf(columns[c]);
+                if (bc >= 0 && !a[c].equals(b[bc])) {
+                    out.println("warning: window " + w + " played out differently"
+                            + " from the baseline (" + columns[c] + " " + a[c]
+                            + " vs " + b[bc] + ")");
+                    w = windows;
+                    break;
+                }
+            }
+        }
+
+        out.printf(Locale.ROOT, "%-20s %12s %12s %9s%n", "phase",
+                "baseline us", "current us", "change");
+        int regressions = 0;
+        int ticksColumn = Arrays.asList(columns).indexOf("ticks");
+        for (int c = 0; c < columns.length; c++) {
+            int bc = baseColumns.indexOf(columns[c]);
+            if (!columns[c].endsWith("_us") || bc < 0) {
+                continue;
+            }
+            double now = weightedMean(current.subList(0, windows), c, ticksColumn);
+            double before = weightedMean(baseRows.subList(0, windows), bc,
+                    baseColumns.indexOf("ticks"));
+            double change = before == 0 ? 0 : (now - before) / before * 100;
+            boolean regressed = change > tolerance
+                    && Math.max(now, before) >= NOISE_FLOOR_US;
+            if (regressed) {
+                regressions++;
+            }
+            out.printf(Locale.ROOT, "%-20s %12.3f %12.3f %+8.1f%%%s%n",
+                    columns[c].substring(0, columns[c].length() - 3),
+                    before, now, change, regressed ? "  REGRESSION" : "");
+        }
+        return regressions;
+    }
+
+    /**
+     * Return the mean of a column over the rows, weighted by the number of
+     * ticks in each row.
+     */
+    private static double weightedMean(List<String> rows, int column, int ticksColumn) {
+        double sum = 0;
+        long ticks = 0;
+        for (String row : rows) {
+            String[] values = row.split(",");
+            int n = Integer.parseInt(values[ticksColumn]);
+            sum += Double.parseDouble(values[column]) * n;
+            ticks += n;
+        }
+        return ticks == 0 ? 0 : sum / ticks;
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        }
+        if (lines.isEmpty()) {
+            throw new IOException(file + " is empty");
+        }
+        return lines;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Session session = null;
+        int window = 100;
+        int warmup = 1;
+        PrintStream out = System.out;
+        File save = null;
+        File baseline = null;
+        double tolerance = 10;
+        if (args.length % 2 != 0) {
+            throw new IllegalArgumentException("missing value for " + args[args.length - 1]);
+        }
+        for (int i = 0; i < args.length; i += 2) {
+            switch (args[i]) {
+                case "-session":
+                    session = Session.load(new File(args[i + 1]));
+                    break;
+                case "-generate":
+                    String[] parts = args[i + 1].split(",");
+                    session = Session.generate(Long.parseLong(parts[0]),
+                            Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+                    break;
+                case "-window":
+                    window = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-warmup":
+                    warmup = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-out":
+                    out = new PrintStream(args[i + 1]);
+                    break;
+                case "-save":
+                    save = new File(args[i + 1]);
+                    break;
+                case "-baseline":
+                    baseline = new File(args[i + 1]);
+                    break;
+                case "-tolerance":
+                    tolerance = Double.parseDouble(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option: " + args[i]);
+            }
+        }
+        if (session == null) {
+            System.err.println("usage: java SessionReplay (-session file | "
+                    + "-generate seed,level,ticks) [-window ticks] [-warmup replays]"
+                    + " [-out file.csv] [-save file] [-baseline file.csv]"
+                    + " [-tolerance percent]");
+            System.exit(2);
+        }
+        if (save != null) {
+            session.save(save);
+        }
+
+        SessionReplay replay = new SessionReplay(session, window);
+        //let the JIT compile the game first, the replays are all the same
+        for (int i = 0; i < warmup; i++) {
+            replay.replay();
+        }
+        List<String> rows = replay.replay();
+        out.println(header());
+        for (String row : rows) {
+            out.println(row);
+        }
+        if (out != System.out) {
+            out.close();
+        }
+
+        if (baseline != null) {
+            int regressions = compare(header(), rows, readLines(baseline),
+                    tolerance, System.out);
+            if (regressions > 0) {
+                System.out.println(regressions + " phase(s) regressed by more than "
+                        + tolerance + "%");
+                System.exit(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+/**
+ * Runs a world on its own thread at a fixed number of ticks per second and
+ * publishes a render snapshot after every tick, so drawing never competes
+ * with the simulation for a thread and never sees the lists mid-update.
+ *
+ * The time since the last tick is collected in an accumulator and the world
+ * is stepped once for every whole tick in it, so the tick rate stays fixed on
+ * average however long each tick or each sleep actually takes. If the
+ * simulation falls far behind (the machine was suspended, say) the backlog is
+ * dropped rather than played at full speed.
+ *
+ * @author Alex Rodrigues
+ */
+public class Simulation implements Runnable {
+
+    /**
+     * The time between ticks in milliseconds.
+     */
+    public static final int UPDATE_INTERVAL = 20;
+    /**
+     * The time between ticks in nanoseconds.
+     */
+    public static final long TICK_NANOS = UPDATE_INTERVAL * 1000000L;
+    /*
+     * The most ticks that are run to catch up before the backlog is dropped.
+     */
+    private static final int MAX_CATCH_UP_TICKS = 5;
+    private final World world;
+    private final SnapshotBuffer snapshots = new SnapshotBuffer();
+    /*
+     * The session being recorded, or null.
+     */
+    private final Session session;
+    /*
+     * The keys held down, see Session. Set by the input thread and read at
+     * the start of every tick.
+     */
+    private volatile int keys;
+    private volatile boolean running;
+    private Thread thread;
+    private volatile long ticks;
+    private volatile boolean shipActive;
+
+    /**
+     * Creates a simulation of a world and publishes its first snapshot. The
+     * world must not be touched by any other thread after this.
+     *
+     * @param world The world.
+     * @param session The session to record the keys of every tick into, or
+     * null.
+     */
+    public Simulation(World world, Session session) {
+        this.world = world;
+        this.session = session;
+        snapshots.publish(world);
+        shipActive = world.ship.isActive();
+    }
+
+    /**
+     * Starts ticking on a new thread, if not already started.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this, "simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops ticking and waits for the tick in progress to finish.
+     */
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    /**
+     * Stops ticking and closes the world.
+     */
+    public void close() {
+        stop();
+        world.close();
+    }
+
+    @Override
+    public void run() {
+        long previous = System.nanoTime();
+        long lag = 0;
+        while (running) {
+            long now = System.nanoTime();
+            lag += now - previous;
+            previous = now;
+            if (lag > MAX_CATCH_UP_TICKS * TICK_NANOS) {
+                lag = MAX_CATCH_UP_TICKS * TICK_NANOS;
+            }
+            while (lag >= TICK_NANOS && running) {
+                tick();
+                lag -= TICK_NANOS;
+            }
+            long sleep = TICK_NANOS - lag;
+            try {
+                Thread.sleep(sleep / 1000000, (int) (sleep % 1000000));
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+    }
+
+    private void tick() {
+        int k = keys;
+        world.setKeys(k);
+        if (session != null) {
+            session.record(k);
+        }
+        world.step();
+        snapshots.publish(world);
+        shipActive = world.ship.isActive();
+        ticks++;
+    }
+
+    /**
+     * Gets the newest snapshot of the world. This must always be called from
+     * the same thread, and the snapshot stays valid until the next call.
+     *
+     * @return The snapshot.
+     */
+    public RenderSnapshot acquireSnapshot() {
+        return snapshots.acquire();
+    }
+
+    /**
+     * Return how far through the tick after a snapshot it is now, from 0 when
+     * the snapshot was published to 1 when the next one is due. This is how
+     * far the renderer should move the objects from their positions before
+     * the tick of the snapshot to their positions after it.
+     *
+     * @param s The snapshot.
+     */
+    public double getAlpha(RenderSnapshot s) {
+        double alpha = (double) (System.nanoTime() - s.time) / TICK_NANOS;
+        return Math.max(0, Math.min(1, alpha));
+    }
+
+    /**
+     * Sets the keys held down.
+     *
+     * @param keys The keys, see Session.
+     */
+    public void setKeys(int keys) {
+        this.keys = keys;
+    }
+
+    public int getKeys() {
+        return keys;
+    }
+
+    /**
+     * Return true iff the ship was active at the end of the last tick.
+     */
+    public boolean isShipActive() {
+        return shipActive;
+    }
+
+    /**
+     * Gets the number of ticks run since the simulation was created.
+     *
+     * @return The number of ticks.
+     */
+    public long getTickCount() {
+        return ticks;
+    }
+
+    /**
+     * Gets the session being recorded.
+     *
+     * @return The session, or null.
+     */
+    public Session getSession() {
+        return session;
+    }
+}
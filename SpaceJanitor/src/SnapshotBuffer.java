@@ -0,0 +1,226 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands render snapshots from the simulation thread to the rendering thread
+ * without locks, using three snapshots. The simulation fills in the back
+ * snapshot and swaps it with the middle one; the renderer swaps its front
+ * snapshot with the middle one when a newer tick has been put there. Neither
+ * side ever waits for the other and the renderer always gets the newest
+ * complete tick.
+ *
+ * publish must only be called from one thread and acquire from one other
+ * thread.
+ *
+ * @author Alex Rodrigues
+ */
+public class SnapshotBuffer {
+
+    /*
+     * The middle slot holds the index of a snapshot, plus the FRESH bit when
+     * that snapshot has not been taken by the renderer yet.
+     */
+    private static final int INDEX = 3;
+    private static final int FRESH = 4;
+    private final RenderSnapshot[] snapshots = {new RenderSnapshot(),
+        new RenderSnapshot(), new RenderSnapshot()};
+    private final AtomicInteger middle = new AtomicInteger(1);
+    /*
+     * The snapshot being filled in, only touched by the simulation.
+     */
+    private int back = 0;
+    /*
+     * The snapshot being drawn, only touched by the renderer.
+     */
+    private int front = 2;
+    /*
+     * The state of the simulation side. The positions and angles of the
+     * objects in the last published snapshot, indexed like that snapshot,
+     * so the next one can start its objects from there.
+     */
+    private long tick;
+    private double[] lastX = new double[0], lastY = new double[0];
+    private double[] lastAngle = new double[0];
+    private double[] nextX = new double[0], nextY = new double[0];
+    private double[] nextAngle = new double[0];
+    /*
+     * The sleeping junk last copied into a snapshot: where it came from, its
+     * version then, the stamp the copy was given and the snapshot that holds
+     * it.
+     */
+    private DormantRegions copiedFrom;
+    private int copiedVersion;
+    private long dormantStamp;
+    private RenderSnapshot dormantSource;
+
+    /**
+     * Takes a snapshot of the world and makes it the newest one. Called by
+     * the simulation after every tick.
+     *
+     * @param world The world.
+     */
+    public void publish(World world) {
+        RenderSnapshot s = snapshots[back];
+        int oldSize = s.size();
+        int n = 1 + world.spaceJunk.size() + world.planets.size()
+                + world.bullets.size();
+        s.ensureCapacity(n);
+        if (nextX.length < n) {
+            int capacity = Math.max(n, nextX.length * 2);
+            nextX = new double[capacity];
+            nextY = new double[capacity];
+            nextAngle = new double[capacity];
+        }
+        tick++;
+
+        int i = 0;
+        s.kindStart[RenderSnapshot.SHIP] = i;
+        i = add(s, i, world.ship);
+        s.kindStart[RenderSnapshot.JUNK] = i;
+        i = addAll(s, i, world.spaceJunk);
+        s.kindStart[RenderSnapshot.PLANET] = i;
+        i = addAll(s, i, world.planets);
+        s.kindStart[RenderSnapshot.BULLET] = i;
+        i = addAll(s, i, world.bullets);
+        s.kindStart[RenderSnapshot.KINDS] = i;
+        if (oldSize > i) {
+            //let the objects that are gone be collected
+            Arrays.fill(s.objects, i, oldSize, null);
+        }
+        world.debris.copyTo(s);
+        copyDormant(s, world.dormancy);
+        s.grid.clear(world.spaceWidth, world.spaceHeight);
+        for (int j = s.kindStart[RenderSnapshot.JUNK]; j < i; j++) {
+            s.grid.add(j, s.x1[j], s.y1[j]);
+        }
+        s.grid.build();
+
+        double[] t = lastX;
+        lastX = nextX;
+        nextX = t;
+        t = lastY;
+        lastY = nextY;
+        nextY = t;
+        t = lastAngle;
+        lastAngle = nextAngle;
+        nextAngle = t;
+
+        s.tick = tick;
+        s.level = world.level;
+        s.lives = world.ship.lives;
+        s.score = world.score;
+        s.massToNextLevel = world.massToNextLevel;
+        s.spaceWidth = world.spaceWidth;
+        s.spaceHeight = world.spaceHeight;
+        s.time = System.nanoTime();
+        back = middle.getAndSet(back | FRESH) & INDEX;
+    }
+
+    /**
+     * Gets the newest snapshot. Called by the renderer before drawing a
+     * frame; the snapshot stays valid until the next call.
+     *
+     * @return The snapshot, or null if nothing has been published yet.
+     */
+    public RenderSnapshot acquire() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX;
+        }
+        RenderSnapshot s = snapshots[front];
+        return s.tick == 0 ? null : s;
+    }
+
+    /**
+     * Brings the sleeping junk in a snapshot up to date. Sleeping junk only
+     * changes every DormantRegions.INTERVAL ticks, so it is only read from
+     * the world then, and the snapshots that still have an older copy are
+     * given the new one from the snapshot it was read into. Most ticks this
+     * copies nothing.
+     */
+    private void copyDormant(RenderSnapshot s, DormantRegions dormancy) {
+        if (dormancy != copiedFrom || dormancy.getVersion() != copiedVersion) {
+            EntityStore<SpaceJunk> junk = dormancy.getJunk();
+            int n = junk.size();
+            s.ensureDormantCapacity(n);
+            System.arraycopy(junk.xPosition, 0, s.dormantX, 0, n);
+            System.arraycopy(junk.yPosition, 0, s.dormantY, 0, n);
+            for (int j = 0; j < n; j++) {
+                s.dormantSize[j] = junk.get(j).minimapSize;
+            }
+            s.dormantCount = n;
+            s.dormantStamp = ++dormantStamp;
+            copiedFrom = dormancy;
+            copiedVersion = dormancy.getVersion();
+            dormantSource = s;
+        } else if (s.dormantStamp != dormantStamp) {
+            //the renderer only ever reads the source, so reading it here too
+            //is safe
+            RenderSnapshot from = dormantSource;
+            int n = from.dormantCount;
+            s.ensureDormantCapacity(n);
+            System.arraycopy(from.dormantX, 0, s.dormantX, 0, n);
+            System.arraycopy(from.dormantY, 0, s.dormantY, 0, n);
+            System.arraycopy(from.dormantSize, 0, s.dormantSize, 0, n);
+            s.dormantCount = n;
+            s.dormantStamp = dormantStamp;
+        }
+    }
+
+    private int addAll(RenderSnapshot s, int i, List<? extends GameObject> list) {
+        for (int j = 0; j < list.size(); j++) {
+            i = add(s, i, list.get(j));
+        }
+        return i;
+    }
+
+    private int add(RenderSnapshot s, int i, GameObject obj) {
+        double x = obj.getXPosition();
+        double y = obj.getYPosition();
+        double angle = obj.getAngle();
+        s.objects[i] = obj;
+        s.active[i] = obj.isActive();
+        s.x1[i] = x;
+        s.y1[i] = y;
+        s.angle1[i] = angle;
+        if (obj.renderTick == tick - 1 && obj.renderTick != 0) {
+            int slot = obj.renderSlot;
+            s.x0[i] = lastX[slot];
+            s.y0[i] = lastY[slot];
+            s.angle0[i] = lastAngle[slot];
+        } else {
+            //the object is new, it has nowhere to move from
+            s.x0[i] = x;
+            s.y0[i] = y;
+            s.angle0[i] = angle;
+        }
+        nextX[i] = x;
+        nextY[i] = y;
+        nextAngle[i] = angle;
+        obj.renderTick = tick;
+        obj.renderSlot = i;
+        return i + 1;
+    }
+}
@@ -21,7 +21,7 @@
  */
 
 import java.awt.Polygon;
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * A piece of junk in space.
@@ -33,8 +33,14 @@ public class SpaceJunk extends GameObject {
      * Controls how large the space junk is.
      */
     int scale;
+    /**
+     * The shape of the junk at each scale. Shapes are never changed once
+     * created so every piece of junk with the same scale shares one.
+     */
+    private static Polygon[] shapes = new Polygon[4];
 
-    public SpaceJunk() {
+    public SpaceJunk(World world) {
+        super(world);
         scale = 3;
         init();
     }
@@ -43,24 +49,25 @@ public class SpaceJunk extends GameObject {
      * Splits the junk into smaller pieces if it is large 
      * enough to be split.
      *
-     * @param junk The list of junk in the world.
+     * @param junk The list of junk in the world. The pieces are spawned
+     * into it and join at its next commit.
      */
-    public void splitJunk(ArrayList<SpaceJunk> junk) {
+    public void splitJunk(EntityStore<SpaceJunk> junk) {
         if (scale > 1) {
 
-            junk.add(new SpaceJunk(xPosition + 5,
-                    yPosition - 5,
+            junk.spawn(new SpaceJunk(world, getXPosition() + 5,
+                    getYPosition() - 5,
                     scale - 1));
-            junk.add(new SpaceJunk(xPosition - 5, yPosition + 5,
+            junk.spawn(new SpaceJunk(world, getXPosition() - 5, getYPosition() + 5,
                     scale - 1));
         }
     }
 
-    public SpaceJunk(double x, double y, int s) {
+    public SpaceJunk(World world, double x, double y, int s) {
+        super(world);
         scale = s;
         init();
-        xPosition = x;
-        yPosition = y;
+        setPosition(x, y);
     }
 
     /*
@@ -71,59 +78,94 @@ public class SpaceJunk extends GameObject {
         
         //mass is a function of scale
         double massFactor = Math.pow(10, scale);
-        this.mass = 10000 * massFactor - 1000 * 
-                massFactor *(0.5 - Math.random())*scale;
+        setMass(10000 * massFactor - 1000 * 
+                massFactor *(0.5 - nextRandom())*scale);
         
         //hp is a function of mass
         //this.hp = this.mass / 10000;
-        this.hp = scale; //use scale until weapons are implemented
+        setHp(scale); //use scale until weapons are implemented
         createShape();
         
         //create a random initial velocity
         double h, a;
-        h = (Math.random()*5 + 5.0) / scale;
-        a = Math.random() * 2 * Math.PI;
-        xVelocity = Math.cos(a) * h;
-        yVelocity = Math.sin(a) * h;
+        h = (nextRandom()*5 + 5.0) / scale;
+        a = nextRandom() * 2 * Math.PI;
+        setVelocity(Math.cos(a) * h, Math.sin(a) * h);
         
         //create an initial position with a minimum and maximum distance
         //from the center of the world
-        h = Math.random() * ((Game.SPACE_WIDTH/3 + Game.SPACE_HEIGHT/3)/2) + 100;
-        a = Math.random() * 2 * Math.PI;
-        xPosition = Math.cos(a) * h + Game.SPACE_WIDTH/2;
-        yPosition = Math.sin(a) * h + Game.SPACE_HEIGHT/2;
+        h = nextRandom() * ((world.spaceWidth/3 + world.spaceHeight/3)/2) + 100;
+        a = nextRandom() * 2 * Math.PI;
+        setPosition(Math.cos(a) * h + world.spaceWidth/2,
+                Math.sin(a) * h + world.spaceHeight/2);
 
-        rotationStep = (Math.random() / 2 - 0.25) / scale;
+        setRotationStep((nextRandom() / 2 - 0.25) / scale);
               
         //create a random constant bias in the velocity
-        this.prefSpeed = Math.random() * 8 + 3;
-        this.prefSpeed *= Math.min(1, 0.2 * Game.level);
-        a = Math.random() * 2 * Math.PI;
-        this.prefXdir = Math.cos(a);
-        this.prefYdir = Math.sin(a);
+        double prefSpeed = nextRandom() * 8 + 3;
+        prefSpeed *= Math.min(1, 0.2 * world.level);
+        a = nextRandom() * 2 * Math.PI;
+        setPreferredVelocity(Math.cos(a), Math.sin(a), prefSpeed);
         
         this.setActive();
     }
 
     @Override
     public void createShape() {
-        shape = new Polygon();
-        shape.addPoint(15 * scale, 6 * scale);
-        shape.addPoint(7 * scale, 17 * scale);
-        shape.addPoint(-13 * scale, 8 * scale);
-        shape.addPoint(-11 * scale, -10 * scale);
-        shape.addPoint(12 * scale, -16 * scale);
-        drawShape = Game.copyPolygon(shape);
+        if (scale >= shapes.length) {
+            shapes = Arrays.copyOf(shapes, scale + 1);
+        }
+        if (shapes[scale] == null) {
+            Polygon p = new Polygon();
+            p.addPoint(15 * scale, 6 * scale);
+            p.addPoint(7 * scale, 17 * scale);
+            p.addPoint(-13 * scale, 8 * scale);
+            p.addPoint(-11 * scale, -10 * scale);
+            p.addPoint(12 * scale, -16 * scale);
+            shapes[scale] = p;
+        }
+        shape = shapes[scale];
     }
 
-    public void hit(ArrayList<Debris> debris) {
+    public void hit(DebrisParticles debris) {
         super.hit(debris, true);
     }
 
     public void update() {
-        angle += rotationStep;
+        store.angle[id] += getRotationStep();
         super.update();
-        this.xVelocity *= (0.9999 - 0.03*Math.random());
-        this.yVelocity *= (0.9999 - 0.03*Math.random());
+        store.xVelocity[id] *= (0.9999 - 0.03*nextRandom());
+        store.yVelocity[id] *= (0.9999 - 0.03*nextRandom());
+    }
+
+    /**
+     * Updates all the junk in a list in one pass over the arrays of the
+     * store. This does the same as calling update on each piece of junk,
+     * except that the draw shapes are left where they are; the collision
+     * tests move the draw shape of a piece when it is near enough to
+     * something to need it.
+     *
+     * @param world The world the junk is in.
+     * @param junk The list of junk.
+     */
+    public static void updateAll(World world, EntityStore<SpaceJunk> junk) {
+        int n = junk.size();
+        int width = world.spaceWidth, height = world.spaceHeight;
+        double[] xPosition = junk.xPosition, yPosition = junk.yPosition;
+        double[] xVelocity = junk.xVelocity, yVelocity = junk.yVelocity;
+        double[] prefXdir = junk.prefXdir, prefYdir = junk.prefYdir;
+        double[] prefSpeed = junk.prefSpeed;
+        double[] angle = junk.angle, rotationStep = junk.rotationStep;
+        int[] counter = junk.counter;
+        long[] seed = junk.randomSeed, gamma = junk.randomGamma;
+        for (int i = 0; i < n; i++) {
+            counter[i]++;
+            angle[i] += rotationStep[i];
+            xPosition[i] += xVelocity[i] + prefXdir[i] * prefSpeed[i];
+            yPosition[i] += yVelocity[i] + prefYdir[i] * prefSpeed[i];
+            wrap(xPosition, yPosition, i, width, height);
+            xVelocity[i] *= (0.9999 - 0.03*RandomSource.nextDouble(seed, gamma, i));
+            yVelocity[i] *= (0.9999 - 0.03*RandomSource.nextDouble(seed, gamma, i));
+        }
     }
 }
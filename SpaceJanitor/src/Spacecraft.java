@@ -21,7 +21,7 @@
  */
 
 import java.awt.Polygon;
-import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The players controllable ship.
@@ -44,16 +44,16 @@ public class Spacecraft extends GameObject {
      */
     private final double speedDecay = 0.992;
 
-    public Spacecraft() {
+    public Spacecraft(World world) {
+        super(world);
         createShape();
-        this.gInfluence = 10 * Math.min(0.1 * Game.level, 1);
-        this.mass = 924739;
-        xPosition = Game.SPACE_WIDTH / 2;
-        yPosition = Game.SPACE_HEIGHT / 2;
-        rotationStep = 0.15;
+        setGInfluence(10 * Math.min(0.1 * world.level, 1));
+        setMass(924739);
+        setPosition(world.spaceWidth / 2, world.spaceHeight / 2);
+        setRotationStep(0.15);
         speedFactor = 0.4;
         this.setActive();
-        angle = -Math.PI / 2;
+        setAngle(-Math.PI / 2);
         this.minimapSize = 4;
         lives = 3;
     }
@@ -64,11 +64,9 @@ public class Spacecraft extends GameObject {
      */
     public void update() {
         if (!this.isActive()){
-            this.xVelocity = 0;
-            this.yVelocity = 0;
+            setVelocity(0, 0);
         }
-        this.xVelocity *= speedDecay;
-        this.yVelocity *= speedDecay;       
+        setVelocity(getXVelocity() * speedDecay, getYVelocity() * speedDecay);
         super.update();
     }
 
@@ -81,13 +79,13 @@ public class Spacecraft extends GameObject {
         shape.addPoint(15, 0);
         shape.addPoint(-10, 10);
         shape.addPoint(-10, -10);
-        drawShape = Game.copyPolygon(shape);
+        drawShape = GameObject.copyPolygon(shape);
     }
 
     /**
      * Notify that the ship has been hit.
      */
-    public void hit(ArrayList<Debris> debris) {
+    public void hit(DebrisParticles debris) {
         boolean oldActive = this.isActive();
         super.hit(debris, true);
         //Checks if the ships active has changed.
@@ -101,33 +99,31 @@ public class Spacecraft extends GameObject {
      * Accelerates the ship in the forward direction.
      */
     public void accelerate() {
-        xVelocity += Math.cos(angle) * speedFactor;
-        yVelocity += Math.sin(angle) * speedFactor;
+        addVelocity(Math.cos(getAngle()) * speedFactor,
+                Math.sin(getAngle()) * speedFactor);
     }
 
     /**
      * Rotates the ship left;
      */
     public void rotateLeft() {
-        angle -= rotationStep;
+        setAngle(getAngle() - getRotationStep());
     }
 
     /**
      * Rotates the ship right.
      */
     public void rotateRight() {
-        angle += rotationStep;
+        setAngle(getAngle() + getRotationStep());
     }
 
     /**
      * Reset the ships properties back to default.
      */
     public void reset() {
-        xVelocity = 0;
-        yVelocity = 0;
-        xPosition = Game.SPACE_WIDTH / 2;
-        yPosition = Game.SPACE_HEIGHT / 2;
-        angle = -Math.PI / 2;
+        setVelocity(0, 0);
+        setPosition(world.spaceWidth / 2, world.spaceHeight / 2);
+        setAngle(-Math.PI / 2);
         this.setActive();
     }
 
@@ -136,11 +132,13 @@ public class Spacecraft extends GameObject {
      *
      * @param spaceJunk The list of space junk.
      * @param planets The list of planets.
+     * @param junkGrid The positions of the junk, by index in its list.
+     * @param planetGrid The positions of the planets, by index in their list.
      */
-    public void checkRespawnShip(ArrayList<SpaceJunk> spaceJunk,
-            ArrayList<Planet> planets) {
-        if (!this.isActive() && this.counter > respawnDelay
-                && isRespawnSafe(spaceJunk, planets)
+    public void checkRespawnShip(List<SpaceJunk> spaceJunk,
+            List<Planet> planets, SpatialGrid junkGrid, SpatialGrid planetGrid) {
+        if (!this.isActive() && store.counter[id] > respawnDelay
+                && isRespawnSafe(spaceJunk, planets, junkGrid, planetGrid)
                 && this.lives > 0) {
             this.reset();
         }
@@ -154,40 +152,45 @@ public class Spacecraft extends GameObject {
     }
     /*
      * Return true iff the ship is safe to respawn. This checks
-     * if there is junk, or other threats in the spawn area.
+     * if there is junk, or other threats in the spawn area, looking only at
+     * the objects the grids put near the center of the world.
      */
-    public boolean isRespawnSafe(ArrayList<SpaceJunk> spaceJunk, ArrayList<Planet> planets) {
+    public boolean isRespawnSafe(List<SpaceJunk> spaceJunk, List<Planet> planets,
+            SpatialGrid junkGrid, SpatialGrid planetGrid) {
         double x, y, h;
         boolean ret = true;
-        for (int i = 0; i < spaceJunk.size(); i++) {
-            SpaceJunk sj = spaceJunk.get(i);
-            x = sj.xPosition - Game.SPACE_WIDTH / 2;
-            y = sj.yPosition - Game.SPACE_HEIGHT / 2;
+        double centerX = world.spaceWidth / 2;
+        double centerY = world.spaceHeight / 2;
+        int found = junkGrid.queryRadius(centerX, centerY, 600);
+        for (int i = 0; i < found; i++) {
+            SpaceJunk sj = spaceJunk.get(junkGrid.getResult(i));
+            x = sj.getXPosition() - world.spaceWidth / 2;
+            y = sj.getYPosition() - world.spaceHeight / 2;
             h = Math.sqrt(x * x + y * y);
 
             if (h < 600) {
                 if (h > 0) {
                     double normX = x / h;
                     double normY = y / h;
-                    sj.xVelocity += normX * 3;
-                    sj.yVelocity += normX * 3;
+                    sj.addVelocity(normX * 3, normX * 3);
                 }
                 ret = false;
             }
         }
 
-        for (int i = 0; i < planets.size(); i++) {
-            Planet p = planets.get(i);
-            x = p.xPosition - Game.SPACE_WIDTH / 2;
-            y = p.yPosition - Game.SPACE_HEIGHT / 2;
+        found = planetGrid.queryRadius(centerX, centerY,
+                700 + Planet.MAX_DIAMETER / 2);
+        for (int i = 0; i < found; i++) {
+            Planet p = planets.get(planetGrid.getResult(i));
+            x = p.getXPosition() - world.spaceWidth / 2;
+            y = p.getYPosition() - world.spaceHeight / 2;
             h = Math.sqrt(x * x + y * y);
 
             if (h < 700 + p.diameter/2) {
                 if (h > 0) {
                     double normX = x / h;
                     double normY = y / h;
-                    p.xVelocity += normX * 3;
-                    p.yVelocity += normX * 3;
+                    p.addVelocity(normX * 3, normX * 3);
                 }
                 ret = false;
             }
@@ -199,14 +202,15 @@ public class Spacecraft extends GameObject {
     /**
      * Fires the ships weapon.
      *
-     * @param bulletList The list of bullets in the world.
+     * @param bulletList The list of bullets in the world. The bullet is
+     * spawned into it and joins at its next commit.
      */
-    public void fireWeapon(ArrayList<Bullet> bulletList) {
-        if (this.counter > weaponDelay && this.isActive()) {
-            bulletList.add(new Bullet(this.drawShape.xpoints[0],
+    public void fireWeapon(EntityStore<Bullet> bulletList) {
+        if (store.counter[id] > weaponDelay && this.isActive()) {
+            bulletList.spawn(Bullet.create(world, this.drawShape.xpoints[0],
                     this.drawShape.ypoints[0],
-                    this.angle, this.xVelocity, this.yVelocity));
-            this.counter = 0;
+                    getAngle(), getXVelocity(), getYVelocity()));
+            store.counter[id] = 0;
 
         }
     }
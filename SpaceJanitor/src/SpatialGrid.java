@@ -0,0 +1,303 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.util.Arrays;
+
+/**
+ * A uniform grid over the world for finding the points near a place without
+ * looking at every point. The world wraps around at its edges, like
+ * GameObject.checkBounds, so the grid does too: a query that runs off one
+ * edge carries on from the other, and distances are measured the shortest
+ * way around.
+ *
+ * The grid is rebuilt from scratch each time it is used: clear it, add every
+ * point with an id chosen by the caller, then build. Queries collect the ids
+ * they find, which are then read with getResult.
+ *
+ * @author Alex Rodrigues
+ */
+public class SpatialGrid {
+
+    /*
+     * The most cells along each side, which bounds the memory and the cost
+     * of clearing the grid on very large worlds.
+     */
+    private static final int MAX_CELLS = 128;
+    /*
+     * The size of the cells the caller would like. The real cells are close
+     * to this but divide the world exactly.
+     */
+    private final double cellSize;
+    private double width, height;
+    private double cellWidth, cellHeight;
+    private int columns, rows;
+    /*
+     * The points in the order they were added, and the cell of each.
+     */
+    private int[] addedIds = new int[256];
+    private double[] addedX = new double[256];
+    private double[] addedY = new double[256];
+    private int[] addedCell = new int[256];
+    private int size;
+    /*
+     * The points sorted by cell. The points in cell c are at cellStart[c]
+     * up to cellStart[c + 1].
+     */
+    private int[] cellStart = new int[1];
+    private int[] ids = new int[256];
+    private double[] xs = new double[256];
+    private double[] ys = new double[256];
+    /*
+     * The ids found by the last query.
+     */
+    private int[] results = new int[64];
+    private int resultCount;
+
+    /**
+     * Creates an empty grid.
+     *
+     * @param cellSize The size of the cells. Queries are fastest when this
+     * is about the size of the areas asked about.
+     */
+    public SpatialGrid(double cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Removes every point and sizes the grid for a world.
+     *
+     * @param width The width of the world.
+     * @param height The height of the world.
+     */
+    public void clear(double width, double height) {
+        this.width = width;
+        this.height = height;
+        columns = Math.max(1, Math.min(MAX_CELLS, (int) Math.ceil(width / cellSize)));
+        rows = Math.max(1, Math.min(MAX_CELLS, (int) Math.ceil(height / cellSize)));
+        cellWidth = width / columns;
+        cellHeight = height / rows;
+        size = 0;
+    }
+
+    /**
+     * Adds a point.
+     *
+     * @param id The id returned by queries that find the point.
+     * @param x The x position.
+     * @param y The y position.
+     */
+    public void add(int id, double x, double y) {
+        if (size == addedIds.length) {
+            int n = size * 2;
+            addedIds = Arrays.copyOf(addedIds, n);
+            addedX = Arrays.copyOf(addedX, n);
+            addedY = Arrays.copyOf(addedY, n);
+            addedCell = Arrays.copyOf(addedCell, n);
+        }
+        addedIds[size] = id;
+        addedX[size] = x;
+        addedY[size] = y;
+        addedCell[size] = column(x) + row(y) * columns;
+        size++;
+    }
+
+    /**
+     * Sorts the points that were added into their cells. Must be called
+     * after adding and before querying.
+     */
+    public void build() {
+        int cells = columns * rows;
+        if (cellStart.length < cells + 1) {
+            cellStart = new int[cells + 1];
+        } else {
+            Arrays.fill(cellStart, 0, cells + 1, 0);
+        }
+        if (ids.length < size) {
+            ids = new int[addedIds.length];
+            xs = new double[addedIds.length];
+            ys = new double[addedIds.length];
+        }
+        for (int i = 0; i < size; i++) {
+            cellStart[addedCell[i] + 1]++;
+        }
+        for (int c = 0; c < cells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        //cellStart[c] is used as the next free place in cell c and ends up
+        //at the start of cell c + 1, so it is shifted back afterwards
+        for (int i = 0; i < size; i++) {
+            int k = cellStart[addedCell[i]]++;
+            ids[k] = addedIds[i];
+            xs[k] = addedX[i];
+            ys[k] = addedY[i];
+        }
+        System.arraycopy(cellStart, 0, cellStart, 1, cells);
+        cellStart[0] = 0;
+    }
+
+    /**
+     * Gets the number of points in the grid.
+     *
+     * @return The number of points.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the points within a distance of a position, measured the
+     * shortest way around the world.
+     *
+     * @param x The x position.
+     * @param y The y position.
+     * @param radius The distance.
+     * @return The number of points found.
+     */
+    public int queryRadius(double x, double y, double radius) {
+        resultCount = 0;
+        double r2 = radius * radius;
+        int firstColumn = (int) Math.floor((x - radius) / cellWidth);
+        int lastColumn = (int) Math.floor((x + radius) / cellWidth);
+        int firstRow = (int) Math.floor((y - radius) / cellHeight);
+        int lastRow = (int) Math.floor((y + radius) / cellHeight);
+        if (lastColumn - firstColumn >= columns) {
+            firstColumn = 0;
+            lastColumn = columns - 1;
+        }
+        if (lastRow - firstRow >= rows) {
+            firstRow = 0;
+            lastRow = rows - 1;
+        }
+        for (int r = firstRow; r <= lastRow; r++) {
+            int row = wrap(r, rows) * columns;
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                int cell = row + wrap(c, columns);
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    double dx = wrapDelta(xs[k] - x, width);
+                    double dy = wrapDelta(ys[k] - y, height);
+                    if (dx * dx + dy * dy <= r2) {
+                        addResult(ids[k]);
+                    }
+                }
+            }
+        }
+        return resultCount;
+    }
+
+    /**
+     * Finds the points inside a rectangle. A rectangle that runs off the
+     * edge of the world carries on from the other side.
+     *
+     * @param minX The left edge.
+     * @param minY The top edge.
+     * @param maxX The right edge.
+     * @param maxY The bottom edge.
+     * @return The number of points found.
+     */
+    public int queryRect(double minX, double minY, double maxX, double maxY) {
+        resultCount = 0;
+        double w = maxX - minX;
+        double h = maxY - minY;
+        int firstColumn = (int) Math.floor(minX / cellWidth);
+        int lastColumn = (int) Math.floor(maxX / cellWidth);
+        int firstRow = (int) Math.floor(minY / cellHeight);
+        int lastRow = (int) Math.floor(maxY / cellHeight);
+        if (lastColumn - firstColumn >= columns) {
+            firstColumn = 0;
+            lastColumn = columns - 1;
+        }
+        if (lastRow - firstRow >= rows) {
+            firstRow = 0;
+            lastRow = rows - 1;
+        }
+        for (int r = firstRow; r <= lastRow; r++) {
+            int row = wrap(r, rows) * columns;
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                int cell = row + wrap(c, columns);
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    if (wrapOffset(xs[k] - minX, width) <= w
+                            && wrapOffset(ys[k] - minY, height) <= h) {
+                        addResult(ids[k]);
+                    }
+                }
+            }
+        }
+        return resultCount;
+    }
+
+    /**
+     * Gets an id found by the last query.
+     *
+     * @param i The index of the result.
+     * @return The id.
+     */
+    public int getResult(int i) {
+        return results[i];
+    }
+
+    /**
+     * Sorts the ids found by the last query, so they can be visited in the
+     * order they were added when the ids count up.
+     */
+    public void sortResults() {
+        Arrays.sort(results, 0, resultCount);
+    }
+
+    private void addResult(int id) {
+        if (resultCount == results.length) {
+            results = Arrays.copyOf(results, resultCount * 2);
+        }
+        results[resultCount++] = id;
+    }
+
+    private int column(double x) {
+        return wrap((int) Math.floor(x / cellWidth), columns);
+    }
+
+    private int row(double y) {
+        return wrap((int) Math.floor(y / cellHeight), rows);
+    }
+
+    /**
+     * Wraps a cell number onto the grid.
+     */
+    private static int wrap(int i, int n) {
+        i %= n;
+        return i < 0 ? i + n : i;
+    }
+
+    /**
+     * Wraps a difference in position to the shortest way around the world.
+     */
+    private static double wrapDelta(double d, double size) {
+        return d - size * Math.rint(d / size);
+    }
+
+    /**
+     * Wraps a difference in position into the range 0 up to the size of the
+     * world.
+     */
+    private static double wrapOffset(double d, double size) {
+        d %= size;
+        return d < 0 ? d + size : d;
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks the queries of SpatialGrid against looking at every point. Random
+ * points are put in worlds of random sizes and the grid is asked for random
+ * circles and rectangles, many of them running off the edges of the world
+ * or wider than it, which must carry on from the other side:
+ *
+ * java SpatialGridCheck [queries] [seed]
+ *
+ * A point is in a rectangle if it, or one of its copies a whole world away
+ * in either direction, is inside it, and in a circle if the shortest way
+ * around the world to it is within the radius. The check prints how many
+ * points the queries found, and how many of those were only found by going
+ * around the world, and exits with status 1 if a query finds a point it
+ * should not or misses one it should.
+ *
+ * @author Alex Rodrigues
+ */
+public class SpatialGridCheck {
+
+    /*
+     * The number of queries made on each grid.
+     */
+    private static final int QUERIES_PER_GRID = 100;
+    private final SpatialGrid grid = new SpatialGrid(World.GRID_CELL_SIZE);
+    private double width, height;
+    private double[] xs, ys;
+    private boolean[] found;
+    private long points, wrapped, wrong;
+
+    /**
+     * Fills the grid with random points in a world of a random size.
+     */
+    private void fill(Random random) {
+        width = 500 + random.nextDouble() * 40000;
+        height = 500 + random.nextDouble() * 40000;
+        int n = random.nextInt(2000);
+        xs = new double[n];
+        ys = new double[n];
+        found = new boolean[n];
+        grid.clear(width, height);
+        for (int i = 0; i < n; i++) {
+            //the edges themselves are where GameObject.wrap puts objects
+            xs[i] = random.nextInt(50) == 0 ? width * random.nextInt(2)
+                    : random.nextDouble() * width;
+            ys[i] = random.nextInt(50) == 0 ? height * random.nextInt(2)
+                    : random.nextDouble() * height;
+            grid.add(i, xs[i], ys[i]);
+        }
+        grid.build();
+    }
+
+    /**
+     * Asks the grid for a random rectangle and checks what it finds.
+     */
+    private void checkRect(Random random) {
+        double w = random.nextDouble() * width * (random.nextInt(10) == 0 ? 2 : 0.3);
+        double h = random.nextDouble() * height * (random.nextInt(10) == 0 ? 2 : 0.3);
+        double minX = (random.nextDouble() * 1.4 - 0.2) * width - w / 2;
+        double minY = (random.nextDouble() * 1.4 - 0.2) * height - h / 2;
+        double maxX = minX + w, maxY = minY + h;
+        int n = grid.queryRect(minX, minY, maxX, maxY);
+        collect(n);
+        for (int i = 0; i < xs.length; i++) {
+            boolean inX = false, inY = false;
+            for (int k = -3; k <= 3; k++) {
+                double x = xs[i] + k * width, y = ys[i] + k * height;
+                inX |= x >= minX && x <= maxX;
+                inY |= y >= minY && y <= maxY;
+            }
+            boolean inside = xs[i] >= minX && xs[i] <= maxX
+                    && ys[i] >= minY && ys[i] <= maxY;
+            compare(i, inX && inY, !inside);
+        }
+    }
+
+    /**
+     * Asks the grid for a random circle and checks what it finds.
+     */
+    private void checkRadius(Random random) {
+        double x = (random.nextDouble() * 1.2 - 0.1) * width;
+        double y = (random.nextDouble() * 1.2 - 0.1) * height;
+        double r = random.nextDouble() * Math.min(width, height) * 0.3;
+        int n = grid.queryRadius(x, y, r);
+        collect(n);
+        for (int i = 0; i < xs.length; i++) {
+            double dx0 = xs[i] - x, dy0 = ys[i] - y;
+            double best = Double.POSITIVE_INFINITY;
+            for (int kx = -1; kx <= 1; kx++) {
+                for (int ky = -1; ky <= 1; ky++) {
+                    double dx = xs[i] + kx * width - x;
+                    double dy = ys[i] + ky * height - y;
+                    best = Math.min(best, dx * dx + dy * dy);
+                }
+            }
+            compare(i, best <= r * r, dx0 * dx0 + dy0 * dy0 > r * r);
+        }
+    }
+
+    private void collect(int n) {
+        Arrays.fill(found, false);
+        for (int k = 0; k < n; k++) {
+            int id = grid.getResult(k);
+            if (found[id]) {
+                //a point found twice is as wrong as one found wrongly
+                wrong++;
+            }
+            found[id] = true;
+        }
+    }
+
+    /**
+     * Checks the grid found a point if and only if it should have.
+     *
+     * @param i The point.
+     * @param expected True if the point should have been found.
+     * @param aroundOnly True if the point is only in the query by going
+     * around the world.
+     */
+    private void compare(int i, boolean expected, boolean aroundOnly) {
+        if (found[i] != expected) {
+            wrong++;
+        } else if (expected) {
+            points++;
+            if (aroundOnly) {
+                wrapped++;
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        int queries = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        Random random = new Random(seed);
+        SpatialGridCheck rects = new SpatialGridCheck();
+        SpatialGridCheck circles = new SpatialGridCheck();
+        for (int q = 0; q < queries; q++) {
+            if (q % QUERIES_PER_GRID == 0) {
+                rects.fill(random);
+                circles.fill(random);
+            }
+            rects.checkRect(random);
+            circles.checkRadius(random);
+        }
+        rects.print("queryRect", queries);
+        circles.print("queryRadius", queries);
+        if (rects.wrong + circles.wrong > 0) {
+            System.exit(1);
+        }
+    }
+
+    private void print(String name, int queries) {
+        System.out.println(name + ": " + queries + " queries found " + points
+                + " points, " + wrapped + " of them around the world, "
+                + wrong + " wrong");
+    }
+}
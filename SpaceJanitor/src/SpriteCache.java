@@ -0,0 +1,237 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Polygon;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Images of game objects drawn ahead of time, so drawing an object is a
+ * single drawImage instead of rotating and filling its shape every frame.
+ *
+ * Objects that share a shape, like the junk of one scale, share a set of
+ * images of that shape at evenly spaced angles; the object is drawn with the
+ * image nearest its angle. Each planet gets one image of its disc. Planets
+ * are big, so their images are kept within a memory budget and the ones used
+ * least recently are dropped first.
+ *
+ * The images are made compatible with the graphics they are first drawn to,
+ * so they can be kept in video memory where the platform allows it. A cache
+ * belongs to the render thread.
+ *
+ * @author Alex Rodrigues
+ */
+public class SpriteCache {
+
+    /**
+     * The number of angles each shape is drawn at.
+     */
+    public static final int ROTATION_STEPS = 64;
+    /*
+     * The images of each shape, by the index of their angle.
+     */
+    private final Map<Polygon, BufferedImage[]> rotated = new IdentityHashMap<>();
+    /*
+     * The images of the planets, from least to most recently drawn.
+     */
+    private final LinkedHashMap<Planet, BufferedImage> planets =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private final long planetBudget;
+    private long planetBytes;
+    /*
+     * Planet images that were made and that were dropped to stay in budget.
+     */
+    private long planetMisses, planetEvictions;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param planetBudget The most bytes the planet images may take up.
+     */
+    public SpriteCache(long planetBudget) {
+        this.planetBudget = planetBudget;
+    }
+
+    /**
+     * Draws an object from the images of its shape. All objects with the
+     * same shape must have the same color and fill.
+     *
+     * @param g The graphics to draw into.
+     * @param obj The object.
+     * @param x The x position to draw the object at.
+     * @param y The y position to draw the object at.
+     * @param angle The angle to draw the object at, which is rounded to the
+     * nearest of the ROTATION_STEPS angles.
+     */
+    public void drawRotated(Graphics g, GameObject obj, double x, double y,
+            double angle, int xOffset, int yOffset) {
+        BufferedImage[] images = rotated.get(obj.shape);
+        if (images == null) {
+            images = new BufferedImage[ROTATION_STEPS];
+            rotated.put(obj.shape, images);
+        }
+        int step = (int) Math.floor(angle / (2 * Math.PI) * ROTATION_STEPS + 0.5)
+                % ROTATION_STEPS;
+        if (step < 0) {
+            step += ROTATION_STEPS;
+        }
+        BufferedImage image = images[step];
+        if (image == null) {
+            image = drawShape(g, obj, step * 2 * Math.PI / ROTATION_STEPS);
+            images[step] = image;
+        }
+        int half = image.getWidth() / 2;
+        g.drawImage(image, (int) Math.round(x - xOffset) - half,
+                (int) Math.round(y - yOffset) - half, null);
+    }
+
+    /**
+     * Draws a planet from its image, or straight to the graphics if the
+     * image would not fit in the budget.
+     *
+     * @param g The graphics to draw into.
+     * @param p The planet.
+     * @param x The x position to draw the planet at.
+     * @param y The y position to draw the planet at.
+     */
+    public void drawPlanet(Graphics g, Planet p, double x, double y,
+            int xOffset, int yOffset) {
+        BufferedImage image = planets.get(p);
+        if (image == null) {
+            int size = p.diameter + 1;
+            long bytes = 4L * size * size;
+            if (bytes > planetBudget) {
+                p.paint(g, x, y, 0, xOffset, yOffset);
+                return;
+            }
+            image = createImage(g, size, size);
+            Graphics ig = image.getGraphics();
+            p.paint(ig, p.diameter / 2, p.diameter / 2, 0, 0, 0);
+            ig.dispose();
+            planets.put(p, image);
+            planetBytes += bytes;
+            planetMisses++;
+            evictPlanets(p);
+        }
+        g.drawImage(image, (int) (x - p.diameter / 2) - xOffset,
+                (int) (y - p.diameter / 2) - yOffset, null);
+    }
+
+    /**
+     * Gets the number of bytes taken up by the planet images.
+     *
+     * @return The number of bytes.
+     */
+    public long getPlanetBytes() {
+        return planetBytes;
+    }
+
+    /**
+     * Gets the number of planet images that have been made.
+     *
+     * @return The number of images made.
+     */
+    public long getPlanetMisses() {
+        return planetMisses;
+    }
+
+    /**
+     * Gets the number of planet images that were dropped to stay within the
+     * budget.
+     *
+     * @return The number of images dropped.
+     */
+    public long getPlanetEvictions() {
+        return planetEvictions;
+    }
+
+    /**
+     * Drops the least recently drawn planet images until the rest fit in the
+     * budget, keeping the one just made.
+     */
+    private void evictPlanets(Planet keep) {
+        Iterator<Map.Entry<Planet, BufferedImage>> it = planets.entrySet().iterator();
+        while (planetBytes > planetBudget && it.hasNext()) {
+            Map.Entry<Planet, BufferedImage> e = it.next();
+            if (e.getKey() == keep) {
+                continue;
+            }
+            BufferedImage image = e.getValue();
+            planetBytes -= 4L * image.getWidth() * image.getHeight();
+            image.flush();
+            it.remove();
+            planetEvictions++;
+        }
+    }
+
+    /**
+     * Draws the shape of an object about the center of a new image, rounded
+     * the same way GameObject.paint rounds it.
+     */
+    private static BufferedImage drawShape(Graphics g, GameObject obj,
+            double angle) {
+        Polygon shape = obj.shape;
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        int[] xs = new int[shape.npoints];
+        int[] ys = new int[shape.npoints];
+        int radius = 0;
+        for (int i = 0; i < shape.npoints; i++) {
+            xs[i] = (int) Math.round(shape.xpoints[i] * cos - shape.ypoints[i] * sin);
+            ys[i] = (int) Math.round(shape.xpoints[i] * sin + shape.ypoints[i] * cos);
+            radius = Math.max(radius, Math.max(Math.abs(xs[i]), Math.abs(ys[i])));
+        }
+        int half = radius + 1;
+        for (int i = 0; i < shape.npoints; i++) {
+            xs[i] += half;
+            ys[i] += half;
+        }
+        BufferedImage image = createImage(g, 2 * half + 1, 2 * half + 1);
+        Graphics ig = image.getGraphics();
+        ig.setColor(obj.color);
+        if (obj.fillShape) {
+            ig.fillPolygon(xs, ys, shape.npoints);
+        } else {
+            ig.drawPolygon(xs, ys, shape.npoints);
+        }
+        ig.dispose();
+        return image;
+    }
+
+    /**
+     * Makes a transparent image in the format of the graphics it will be
+     * drawn to, when that is known.
+     */
+    private static BufferedImage createImage(Graphics g, int width, int height) {
+        if (g instanceof Graphics2D) {
+            return ((Graphics2D) g).getDeviceConfiguration()
+                    .createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+        }
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.util.Random;
+
+/**
+ * A background of stars that is worked out from the camera position instead
+ * of being stored. Space is cut into square tiles and the star in each tile
+ * is found by hashing the coordinates of the tile, so the same part of space
+ * always shows the same stars and drawing only visits the tiles on screen.
+ *
+ * The field can have several layers that scroll at different speeds to give
+ * a parallax effect. Each layer costs one pass over its visible tiles.
+ *
+ * @author Alex Rodrigues
+ */
+public class StarField {
+
+    /*
+     * The number of star colors. Must be a power of two.
+     */
+    private static final int PALETTE_SIZE = 64;
+    /*
+     * The size of the tiles of each layer in pixels, how fast each layer
+     * scrolls compared to the camera, and the seed of its hash.
+     */
+    private final int[] tileSize;
+    private final double[] parallax;
+    private final long[] layerSeed;
+    /*
+     * The star colors and the size in pixels of a star of each color.
+     */
+    private final Color[] palette = new Color[PALETTE_SIZE];
+    private final int[] starSize = new int[PALETTE_SIZE];
+
+    /**
+     * Creates a star field.
+     *
+     * @param seed The seed the stars are generated from.
+     * @param tileSize For each layer, the size of its tiles in pixels. There
+     * is one star per tile.
+     * @param parallax For each layer, how fast it scrolls compared to the
+     * camera; 1 scrolls with the world, smaller values are further away.
+     */
+    public StarField(long seed, int[] tileSize, double[] parallax) {
+        if (tileSize.length != parallax.length) {
+            throw new IllegalArgumentException("need a parallax for each of the "
+                    + tileSize.length + " layers");
+        }
+        this.tileSize = tileSize.clone();
+        this.parallax = parallax.clone();
+        layerSeed = new long[tileSize.length];
+        Random random = new Random(seed);
+        for (int l = 0; l < layerSeed.length; l++) {
+            layerSeed[l] = random.nextLong();
+        }
+        for (int i = 0; i < PALETTE_SIZE; i++) {
+            //these magic numbers are just creating a random color
+            //with some constraints
+            palette[i] = new Color(150 + random.nextInt(105),
+                    150 + random.nextInt(105), random.nextInt(100),
+                    100 + random.nextInt(155));
+            //use stars blue color intensity to determine the size
+            starSize[i] = palette[i].getBlue() < 50 ? 2 : 1;
+        }
+    }
+
+    /**
+     * Draws the stars seen by a camera.
+     *
+     * @param g The graphics to draw into.
+     * @param cameraX The world x coordinate of the left edge of the view.
+     * @param cameraY The world y coordinate of the top edge of the view.
+     * @param width The width of the view.
+     * @param height The height of the view.
+     */
+    public void draw(Graphics g, int cameraX, int cameraY, int width,
+            int height) {
+        for (int l = 0; l < tileSize.length; l++) {
+            int size = tileSize[l];
+            long left = (long) Math.floor(cameraX * parallax[l]);
+            long top = (long) Math.floor(cameraY * parallax[l]);
+            long firstX = floorDiv(left, size);
+            long lastX = floorDiv(left + width, size);
+            long firstY = floorDiv(top, size);
+            long lastY = floorDiv(top + height, size);
+            for (long ty = firstY; ty <= lastY; ty++) {
+                for (long tx = firstX; tx <= lastX; tx++) {
+                    long h = hash(tx, ty, layerSeed[l]);
+                    int x = (int) (tx * size + (h & 0xffff) % size - left);
+                    int y = (int) (ty * size + ((h >>> 16) & 0xffff) % size - top);
+                    int c = (int) (h >>> 32) & (PALETTE_SIZE - 1);
+                    g.setColor(palette[c]);
+                    g.fillRect(x, y, starSize[c], starSize[c]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Mixes the coordinates of a tile into 64 well scrambled bits.
+     */
+    private static long hash(long x, long y, long seed) {
+        long h = seed + x * 0x9E3779B97F4A7C15L + y * 0xC2B2AE3D27D4EB4FL;
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    /**
+     * Divides rounding towards negative infinity, so tiles left of and above
+     * the origin are numbered like the rest.
+     */
+    private static long floorDiv(long a, long b) {
+        long q = a / b;
+        return (a % b != 0 && (a < 0) != (b < 0)) ? q - 1 : q;
+    }
+}
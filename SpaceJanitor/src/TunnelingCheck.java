@@ -0,0 +1,177 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Checks that bullets hit what they fly through, however far they move in a
+ * tick. Each trial puts one piece of the smallest junk somewhere in an empty
+ * world, turned a random way, and fires a bullet straight at it from a few
+ * moves away, and the world is stepped until the bullet hits or passes:
+ *
+ * java TunnelingCheck [trials] [seed]
+ *
+ * The bullets fly at 1, 3 and 10 times the speed the ship fires them at.
+ * The game has a fixed tick, so a faster bullet is the same as a longer
+ * tick. Another set of trials puts the junk within a move of an edge of the
+ * world, on either side, and fires across the edge. For each set the check
+ * prints how many bullets hit, and how many trials had no tick end with the
+ * bullet inside the junk, which a test of the bullet as a point would miss.
+ * The check exits with status 1 if any bullet misses.
+ *
+ * @author Alex Rodrigues
+ */
+public class TunnelingCheck {
+
+    /*
+     * How far the bullet may pass from the center of the junk. The smallest
+     * junk reaches further than this from its center in every direction.
+     */
+    private static final double OFFSET = 4;
+    /*
+     * The ticks a bullet gets to hit.
+     */
+    private static final int TICKS = 6;
+    private final World world;
+    private final Random random;
+    private int trials, hits, betweenTicks;
+
+    private TunnelingCheck(World world, Random random) {
+        this.world = world;
+        this.random = random;
+    }
+
+    /**
+     * Fires a bullet at a piece of junk and steps the world until it hits.
+     *
+     * @param x The x position of the junk.
+     * @param y The y position of the junk.
+     * @param a The direction the bullet flies in.
+     * @param move How far the bullet moves in a tick.
+     * @param before How many moves before the center of the junk the bullet
+     * starts, measured the shortest way around the world.
+     */
+    private void fire(double x, double y, double a, double move, double before) {
+        SpaceJunk target = new SpaceJunk(world, x, y, 1);
+        target.setVelocity(0, 0);
+        target.setPreferredVelocity(0, 0, 0);
+        target.setRotationStep(0);
+        target.setGInfluence(0);
+        target.setAngle(random.nextDouble() * 2 * Math.PI);
+        target.setHp(1e12);
+        world.spaceJunk.add(target);
+
+        double side = OFFSET * (2 * random.nextDouble() - 1);
+        double startX = x - Math.cos(a) * move * before - Math.sin(a) * side;
+        double startY = y - Math.sin(a) * move * before + Math.cos(a) * side;
+        startX -= world.spaceWidth * Math.floor(startX / world.spaceWidth);
+        startY -= world.spaceHeight * Math.floor(startY / world.spaceHeight);
+        Bullet bullet = Bullet.create(world, startX, startY, a, 0, 0);
+        bullet.setVelocity(Math.cos(a) * move, Math.sin(a) * move);
+        bullet.setGInfluence(0);
+        world.bullets.add(bullet);
+
+        boolean inside = false;
+        double hp = target.getHp();
+        target.updateDrawShape();
+        for (int t = 0; t < TICKS && target.getHp() == hp; t++) {
+            world.step();
+            //a hit bullet stays in its list until the next tick, so where it
+            //ended the tick can still be read
+            inside |= target.drawShape.contains(bullet.getXPosition(),
+                    bullet.getYPosition());
+        }
+        trials++;
+        if (target.getHp() < hp) {
+            hits++;
+        }
+        if (!inside) {
+            betweenTicks++;
+        }
+
+        for (int i = 0; i < world.bullets.size(); i++) {
+            world.bulletPool.release(world.bullets.get(i));
+        }
+        world.bullets.clear();
+        world.spaceJunk.clear();
+    }
+
+    private void print(String name) {
+        System.out.printf(Locale.ROOT, "%-14s %d trials, %d hit, %d between"
+                + " ticks%n", name, trials, hits, betweenTicks);
+    }
+
+    public static void main(String[] args) {
+        int trials = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        Random random = new Random(seed);
+        World world = new World(new PairwiseGravity(), 2, seed);
+        world.setWakeRadius(Double.POSITIVE_INFINITY);
+        world.spaceJunk.clear();
+        world.planets.clear();
+        double width = world.spaceWidth, height = world.spaceHeight;
+
+        boolean missed = false;
+        int[] speeds = {1, 3, 10};
+        for (int speed : speeds) {
+            TunnelingCheck check = new TunnelingCheck(world, random);
+            double move = speed * Bullet.SPEED;
+            for (int i = 0; i < trials; i++) {
+                //away from the ship, which sits in the center
+                double x = width * (0.1 + 0.3 * random.nextDouble());
+                double y = height * (0.1 + 0.3 * random.nextDouble());
+                double a = random.nextDouble() * 2 * Math.PI;
+                check.fire(x, y, a, move, 2 + random.nextDouble());
+            }
+            check.print(speed + "x speed");
+            missed |= check.hits < check.trials;
+        }
+
+        TunnelingCheck edges = new TunnelingCheck(world, random);
+        for (int i = 0; i < trials; i++) {
+            double move = speeds[i % speeds.length] * Bullet.SPEED;
+            //a quarter turn for each edge, and junk just before or just
+            //after the edge
+            int edge = random.nextInt(4);
+            double a = edge * Math.PI / 2;
+            double along = move * random.nextDouble();
+            double across = 0.4 + 0.2 * random.nextDouble();
+            boolean after = random.nextBoolean();
+            double x, y;
+            if (edge % 2 == 0) {
+                x = (edge == 0) == after ? along : width - along;
+                y = height * across;
+            } else {
+                x = width * across;
+                y = (edge == 1) == after ? along : height - along;
+            }
+            edges.fire(x, y, a, move, 2 + random.nextDouble());
+        }
+        edges.print("edges");
+        missed |= edges.hits < edges.trials;
+        world.close();
+        if (missed) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,604 @@
+/**
+ *Copyright (C) 2013 Alex Rodrigues
+ *
+ *Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ *software and associated documentation files (the "Software"), to deal in the Software without 
+ *restriction, including without limitation the rights to use, copy, modify, merge, publish, 
+ *distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom 
+ *the Software is furnished to do so, subject to the following conditions:
+ *
+ *The above copyright notice and this permission notice shall be included in all copies or 
+ *substantial portions of the Software.
+ *
+ *THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ *INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ *PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ *ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, 
+ *ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ *SOFTWARE.
+ * 
+ * Author: Alex Rodrigues
+ */
+
+/**
+ * The game world: the ship, every object in space, the level and the size of
+ * space. The world is stepped one tick at a time and has no window, timer or
+ * image of its own, so it can be run without a display. The Game applet
+ * drives it from its timer and draws it; HeadlessRunner steps it as fast as
+ * it can.
+ *
+ * Every game object knows the world it is in and reads the level, the size
+ * of space and its random numbers from it, so any number of worlds can be
+ * simulated side by side.
+ *
+ * @author Alex Rodrigues
+ */
+public class World {
+
+    /*
+     * The total width of space. This defines the boundary points for the game
+     * objects.
+     */
+    int spaceWidth;
+    /*
+     * The total height of space. This defines the boundary points for the
+     * game objects.
+     */
+    int spaceHeight;
+    /*
+     * The level the player is on.
+     */
+    int level;
+    /**
+     * The default opening angle for the Barnes-Hut gravity solver.
+     */
+    public static final double BARNES_HUT_THETA = 0.5;
+    /**
+     * The default grid size for the particle mesh gravity solver.
+     */
+    public static final int MESH_GRID_SIZE = 256;
+    /*
+     * The random numbers of the simulation. Every game object and the debris
+     * split a source of their own off this one when they are made, so what
+     * an object draws does not depend on how many numbers anything else
+     * drew, see RandomSource.
+     */
+    final RandomSource random;
+    /*
+     * The state of the objects of the world that are in no list, such as
+     * the ship and objects that are made but not added yet, see
+     * EntityStore.attach.
+     */
+    final EntityStore<GameObject> detached = new EntityStore<>(false, 16);
+    /**
+     * The names of the phases of a tick, in the order step runs them.
+     */
+    public static final String[] PHASES = {"checkRespawnShip", "handleInput",
+        "ship.update", "applyGravity", "removeDestroyedJunk", "updateLists",
+        "commitLifecycle", "updateDormancy", "buildSpatialIndex",
+        "checkCollisions"};
+    /*
+     * The players ship.
+     */
+    Spacecraft ship;
+    /*
+     * The list of all space junk in the world.
+     */
+    EntityStore<SpaceJunk> spaceJunk;
+    /*
+     * The list of all bullets in the world.
+     */
+    EntityStore<Bullet> bullets;
+    /**
+     * The most pieces of debris there can be at once.
+     */
+    public static final int DEBRIS_BUDGET = 2048;
+    /*
+     * All the debris in the world.
+     */
+    DebrisParticles debris;
+    /**
+     * The bullets that have been removed from the world, for reuse. At most
+     * about 50 bullets are in flight at once.
+     */
+    final Pool<Bullet> bulletPool = new Pool<>(64);
+    /*
+     * The list of all planets in the world.
+     */
+    EntityStore<Planet> planets;
+    //true if the key is held down this tick, false otherwise
+    boolean upKey, leftKey, rightKey, spaceKey;
+    /*
+     * The players score.
+     */
+    int score;
+    /**
+     * The total amount of massed needed to be destroyed for the player to reach
+     * then next level.
+     */
+    public int massToNextLevel;
+    /**
+     * The size of the cells of the spatial grids.
+     */
+    public static final int GRID_CELL_SIZE = 1024;
+    /*
+     * Where the junk and the planets are, by their index in their lists.
+     * Rebuilt at the end of every tick.
+     */
+    final SpatialGrid junkGrid = new SpatialGrid(GRID_CELL_SIZE);
+    final SpatialGrid planetGrid = new SpatialGrid(GRID_CELL_SIZE);
+    /*
+     * The largest bounding radius of the junk and of the planets in the
+     * grids.
+     */
+    private double junkRadius, planetRadius;
+    /**
+     * How far from the ship junk is woken up by default.
+     */
+    public static final double WAKE_RADIUS = 16384;
+    /*
+     * The junk far from everything, which is asleep and not in spaceJunk.
+     */
+    final DormantRegions dormancy = new DormantRegions(WAKE_RADIUS);
+    /**
+     * Applies gravity between all the objects in the world.
+     */
+    private final GravitySolver gravity;
+    /*
+     * If not null, the time spent in each phase of a tick is added here in
+     * nanoseconds.
+     */
+    private long[] phaseTimes;
+
+    /**
+     * Creates a world and loads the first level.
+     *
+     * @param gravity The gravity solver.
+     */
+    public World(GravitySolver gravity) {
+        this(gravity, 2);
+    }
+
+    /**
+     * Creates a world and loads the given level, as if the player had
+     * reached it.
+     *
+     * @param gravity The gravity solver.
+     * @param level The level, 2 or more; the first level played is level 2.
+     */
+    public World(GravitySolver gravity, int level) {
+        this(gravity, level, System.nanoTime());
+    }
+
+    /**
+     * Creates a world and loads the given level, as if the player had
+     * reached it. Two worlds with the same seed that are given the same key
+     * presses every tick play out exactly the same.
+     *
+     * @param gravity The gravity solver.
+     * @param level The level, 2 or more; the first level played is level 2.
+     * @param seed The seed for the random numbers of the simulation.
+     */
+    public World(GravitySolver gravity, int level, long seed) {
+        if (level < 2) {
+            throw new IllegalArgumentException("level must be 2 or more: " + level);
+        }
+        this.gravity = gravity;
+        random = new RandomSource(seed);
+        this.level = level - 1;
+        spaceWidth = 25000;
+        spaceHeight = 25000;
+        for (int i = 2; i < level; i++) {
+            spaceWidth *= 1.3;
+            spaceHeight *= 1.3;
+        }
+        ship = new Spacecraft(this);
+        spaceJunk = new EntityStore<>();
+        bullets = new EntityStore<>();
+        debris = new DebrisParticles(this, DEBRIS_BUDGET);
+        planets = new EntityStore<>();
+        spaceJunk.setListener(new LifecycleListener<SpaceJunk>() {
+            @Override
+            public void spawned(SpaceJunk junk) {
+            }
+
+            @Override
+            public void despawned(SpaceJunk junk) {
+                massToNextLevel -= junk.getMass();
+                junk.splitJunk(spaceJunk);
+            }
+        });
+        bullets.setListener(new LifecycleListener<Bullet>() {
+            @Override
+            public void spawned(Bullet bullet) {
+            }
+
+            @Override
+            public void despawned(Bullet bullet) {
+                bulletPool.release(bullet);
+            }
+        });
+        loadNextLevel();
+        buildSpatialIndex();
+    }
+
+    /**
+     * Creates the gravity solver with the given name.
+     *
+     * @param name The name of the solver, or null for the default.
+     * @return The gravity solver.
+     */
+    public static GravitySolver createGravitySolver(String name) {
+        if ("pairwise".equals(name)) {
+            return new PairwiseGravity();
+        }
+        //vector is the old name, which recorded sessions may still use
+        if ("flat".equals(name) || "vector".equals(name)) {
+            return new FlatArrayGravity();
+        }
+        if ("parallel".equals(name)) {
+            return new ParallelGravity();
+        }
+        if ("mesh".equals(name)) {
+            return new ParticleMeshGravity(MESH_GRID_SIZE);
+        }
+        if ("multirate".equals(name)) {
+            return new MultiRateGravity(MultiRateGravity.NEAR_RADIUS,
+                    MultiRateGravity.TOLERANCE);
+        }
+        return new BarnesHutGravity(BARNES_HUT_THETA);
+    }
+
+    /**
+     * Sets up the next level.
+     */
+    private void loadNextLevel() {
+        spaceJunk.clear();
+        dormancy.clear();
+        planets.clear();
+        for (int i = 0; i < bullets.size(); i++) {
+            bulletPool.release(bullets.get(i));
+        }
+        bullets.clear();
+        ship.reset();
+        level += 1;
+        ship.boostLives(1);
+        spaceWidth *= 1.3;
+        spaceHeight *= 1.3;
+        for (int i = 0; i < 250 * level; i++) {
+            spaceJunk.add(new SpaceJunk(this));
+        }
+
+        for (int i = 0; i < 25 * level; i++) {
+            planets.add(new Planet(this));
+        }
+        this.massToNextLevel = (int)( 100000000 * level * 2 *  Math.pow(1.25, level - 1));
+
+    }
+
+    /**
+     * Advances the world by one tick.
+     */
+    public void step() {
+        long t = phaseTimes != null ? System.nanoTime() : 0;
+        ship.checkRespawnShip(spaceJunk, planets, junkGrid, planetGrid);
+        t = lap(0, t);
+        handleInput();
+        //new bullets join straight away so they move on the tick they are fired
+        bullets.commit();
+        t = lap(1, t);
+        ship.update();
+        t = lap(2, t);
+        applyGravity();
+        t = lap(3, t);
+        removeDestroyedJunk();
+        t = lap(4, t);
+        updateLists();
+        t = lap(5, t);
+        commitLifecycle();
+        t = lap(6, t);
+        dormancy.update(this);
+        t = lap(7, t);
+        buildSpatialIndex();
+        t = lap(8, t);
+        checkCollisions();
+        lap(9, t);
+    }
+
+    /**
+     * Adds the time since the last phase ended to a phase, if the phases are
+     * being timed.
+     *
+     * @param phase The index of the phase in PHASES.
+     * @param start The time the phase started.
+     * @return The time the phase ended.
+     */
+    private long lap(int phase, long start) {
+        if (phaseTimes == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        phaseTimes[phase] += now - start;
+        return now;
+    }
+
+    /**
+     * Starts or stops timing the phases of each tick.
+     *
+     * @param phaseTimes The array the time spent in each phase is added to,
+     * one entry per name in PHASES, or null to stop timing.
+     */
+    public void setPhaseTimes(long[] phaseTimes) {
+        if (phaseTimes != null && phaseTimes.length < PHASES.length) {
+            throw new IllegalArgumentException("need a time for each of the "
+                    + PHASES.length + " phases");
+        }
+        this.phaseTimes = phaseTimes;
+    }
+
+    /**
+     * Gets the level the player is on.
+     *
+     * @return The level.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Gets the total width of space.
+     *
+     * @return The width.
+     */
+    public int getSpaceWidth() {
+        return spaceWidth;
+    }
+
+    /**
+     * Gets the total height of space.
+     *
+     * @return The height.
+     */
+    public int getSpaceHeight() {
+        return spaceHeight;
+    }
+
+    /**
+     * Gets the gravitational constant, which grows with the level until
+     * level 5.
+     *
+     * @return The gravitational constant for the current level.
+     */
+    public double gravitationalConstant() {
+        return 0.0000000028 * Math.min(0.2 * level, 1);
+    }
+
+    /**
+     * Gets the gravity solver.
+     *
+     * @return The gravity solver.
+     */
+    public GravitySolver getGravity() {
+        return gravity;
+    }
+
+    /**
+     * Closes the gravity solver. The world must not be stepped after this.
+     */
+    public void close() {
+        gravity.close();
+    }
+
+    /**
+     * Sets how far from the ship junk is woken up. Far away junk sleeps and
+     * is only moved on in closed form, see DormantRegions.
+     *
+     * @param wakeRadius The distance, or infinity to keep all the junk awake.
+     */
+    public void setWakeRadius(double wakeRadius) {
+        dormancy.setWakeRadius(wakeRadius);
+    }
+
+    /**
+     * Gets the amount of junk in the world, awake or asleep.
+     *
+     * @return The number of pieces of junk.
+     */
+    public int getJunkCount() {
+        return spaceJunk.size() + dormancy.size();
+    }
+
+    /**
+     * Gets the keys held down this tick as a bit mask, see Session.
+     *
+     * @return The keys.
+     */
+    public int getKeys() {
+        return (upKey ? Session.UP : 0) | (leftKey ? Session.LEFT : 0)
+                | (rightKey ? Session.RIGHT : 0) | (spaceKey ? Session.FIRE : 0);
+    }
+
+    /**
+     * Sets the keys held down this tick from a bit mask, see Session.
+     *
+     * @param keys The keys.
+     */
+    public void setKeys(int keys) {
+        upKey = (keys & Session.UP) != 0;
+        leftKey = (keys & Session.LEFT) != 0;
+        rightKey = (keys & Session.RIGHT) != 0;
+        spaceKey = (keys & Session.FIRE) != 0;
+    }
+
+    /**
+     * Apply gravitational attraction to all combinations of game objects in
+     * space.
+     */
+    void applyGravity() {
+        gravity.apply(ship, planets, spaceJunk, bullets);
+    }
+
+    /**
+     * Update all the collection of objects in the world.
+     */
+    void updateLists() {
+        SpaceJunk.updateAll(this, spaceJunk);
+        Planet.updateAll(this, planets);
+        for (int i = 0; i < bullets.size(); i++) {
+            Bullet b = bullets.get(i);
+            b.update();
+            if (b.remove()) {
+                bullets.despawn(i);
+            }
+        }
+
+        debris.update();
+    }
+
+    /**
+     * Checks if any junk has been destroyed and queues it to be removed from
+     * the list at the next commit.
+     */
+    public final void removeDestroyedJunk() {
+        for (int i = 0; i < spaceJunk.size(); i++) {
+            if (!spaceJunk.get(i).isActive()) {
+                spaceJunk.despawn(i);
+            }
+        }
+    }
+
+    /**
+     * Applies the spawns and despawns queued during the tick. Destroyed junk
+     * counts towards the next level and is split into smaller pieces here,
+     * and the next level is loaded once enough mass has been destroyed.
+     */
+    void commitLifecycle() {
+        spaceJunk.commit();
+        bullets.commit();
+        planets.commit();
+        if (massToNextLevel <= 0) {
+            loadNextLevel();
+        }
+    }
+
+    /**
+     * Rebuilds the spatial grids from where the junk and planets are now.
+     * Nothing is added or removed between here and the next tick, so the
+     * grids stay in step with the lists until then.
+     */
+    void buildSpatialIndex() {
+        junkRadius = buildGrid(junkGrid, spaceJunk);
+        planetRadius = buildGrid(planetGrid, planets);
+    }
+
+    /**
+     * Rebuilds a grid from the positions in a store.
+     *
+     * @return The largest bounding radius in the store.
+     */
+    private double buildGrid(SpatialGrid grid, EntityStore<?> store) {
+        grid.clear(spaceWidth, spaceHeight);
+        double maxRadius = 0;
+        for (int i = 0; i < store.size(); i++) {
+            grid.add(i, store.xPosition[i], store.yPosition[i]);
+            maxRadius = Math.max(maxRadius, store.radius[i]);
+        }
+        grid.build();
+        return maxRadius;
+    }
+
+    /**
+     * Checks if any of the objects in the world are colliding. Only the ship
+     * and the bullets can hit anything, so the grids are asked for the junk
+     * and planets near each of them, and those whose bounding circles, read
+     * from the arrays of their stores, reach the ship or bullet are tested.
+     * Junk only has its draw shape moved when it gets this far.
+     */
+    public void checkCollisions() {
+        //the ship is hit by junk or a planet
+        collide(ship, true);
+        for (int i = 0; i < bullets.size(); i++) {
+            //a bullet hit junk, or a planet was hit by a bullet
+            collide(bullets.get(i), false);
+        }
+    }
+
+    /**
+     * Tests the ship or a bullet against the junk and planets near it, in
+     * the order of their lists.
+     *
+     * @param obj The ship or bullet.
+     * @param isShip True if only the ship is hurt by a collision, false if
+     * both objects are.
+     */
+    private void collide(GameObject obj, boolean isShip) {
+        if (!obj.isActive()) {
+            return;
+        }
+        double x = obj.getBoundsX(), y = obj.getBoundsY();
+        double r = obj.getBoundingRadius();
+        int found = junkGrid.queryRadius(x, y, r + junkRadius);
+        junkGrid.sortResults();
+        for (int k = 0; k < found; k++) {
+            int i = junkGrid.getResult(k);
+            if (near(spaceJunk, i, x, y, r)) {
+                SpaceJunk junk = spaceJunk.get(i);
+                junk.updateDrawShape();
+                if (junk.isColliding(obj)) {
+                    hit(obj, junk, isShip);
+                }
+            }
+        }
+        found = planetGrid.queryRadius(x, y, r + planetRadius);
+        planetGrid.sortResults();
+        for (int k = 0; k < found; k++) {
+            int i = planetGrid.getResult(k);
+            if (near(planets, i, x, y, r)) {
+                Planet planet = planets.get(i);
+                if (planet.isColliding(obj)) {
+                    hit(obj, planet, isShip);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if an object in a store is active and its bounding circle
+     * reaches a circle.
+     */
+    private static boolean near(EntityStore<?> store, int i, double x,
+            double y, double r) {
+        double dx = store.xPosition[i] - x;
+        double dy = store.yPosition[i] - y;
+        double reach = r + store.radius[i];
+        return store.active[i] && dx * dx + dy * dy <= reach * reach;
+    }
+
+    private void hit(GameObject obj, GameObject other, boolean isShip) {
+        if (!isShip) {
+            other.hit(debris);
+        }
+        obj.hit(debris);
+    }
+
+    /*
+     * Handles user input.
+     */
+    public void handleInput() {
+        if (upKey) {
+            ship.accelerate();
+        }
+
+        if (leftKey) {
+            ship.rotateLeft();
+        }
+
+        if (rightKey) {
+            ship.rotateRight();
+        }
+
+        if (spaceKey) {
+            ship.fireWeapon(bullets);
+        }
+    }
+}